@@ -0,0 +1,68 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+
+@JCStressTest
+@Description("Concurrent requests emit exactly the requested amount of queued values.")
+@Outcome(id = "2, 12", expect = ACCEPTABLE, desc = "Two values emitted in order, the third one is kept.")
+@State
+public class ProxyProducerRequestRequestTest {
+
+    private final RecordingSubscriber mSubscriber = new RecordingSubscriber();
+
+    private final ProxyProducer<Integer> mProducer = new ProxyProducer<Integer>(mSubscriber);
+
+    public ProxyProducerRequestRequestTest() {
+        mProducer.offer(1);
+        mProducer.offer(2);
+        mProducer.offer(3);
+    }
+
+    @Actor
+    public void request1() {
+        mProducer.request(1);
+    }
+
+    @Actor
+    public void request2() {
+        mProducer.request(1);
+    }
+
+    @Arbiter
+    public void arbiter(final II_Result result) {
+        mSubscriber.record(result);
+    }
+}
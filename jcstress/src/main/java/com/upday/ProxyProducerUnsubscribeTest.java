@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+
+@JCStressTest
+@Description("Unsubscribing while values are offered stops the emission without reordering.")
+@Outcome(id = "0, 0", expect = ACCEPTABLE, desc = "Unsubscribed before the first value.")
+@Outcome(id = "1, 1", expect = ACCEPTABLE, desc = "Unsubscribed after the first value.")
+@Outcome(id = "2, 12", expect = ACCEPTABLE, desc = "Unsubscribed after both values.")
+@State
+public class ProxyProducerUnsubscribeTest {
+
+    private final RecordingSubscriber mSubscriber = new RecordingSubscriber();
+
+    private final ProxyProducer<Integer> mProducer = new ProxyProducer<Integer>(mSubscriber);
+
+    public ProxyProducerUnsubscribeTest() {
+        mProducer.request(Long.MAX_VALUE);
+    }
+
+    @Actor
+    public void offer() {
+        mProducer.offer(1);
+        mProducer.offer(2);
+    }
+
+    @Actor
+    public void unsubscribe() {
+        mSubscriber.unsubscribe();
+    }
+
+    @Arbiter
+    public void arbiter(final II_Result result) {
+        mSubscriber.record(result);
+    }
+}
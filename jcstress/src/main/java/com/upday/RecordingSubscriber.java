@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Subscriber;
+
+/**
+ * Subscriber that records received values so that they can be reported by an arbiter.
+ *
+ * Values are accessed by {@link #onNext(Integer)} only while the drain loop is owned,
+ * and by the arbiter once all actors have finished.
+ */
+final class RecordingSubscriber extends Subscriber<Integer> {
+
+    private final List<Integer> mValues = new ArrayList<Integer>();
+
+    @Override
+    public void onCompleted() {
+    }
+
+    @Override
+    public void onError(final Throwable e) {
+    }
+
+    @Override
+    public void onNext(final Integer value) {
+        mValues.add(value);
+    }
+
+    /**
+     * Stores the number of received values in {@code r1} and the received values
+     * as decimal digits in {@code r2}, e.g. values {@code 1, 2} are reported as {@code 12}.
+     *
+     * @param result the result to fill
+     */
+    void record(final II_Result result) {
+        int digits = 0;
+        for (Integer value : mValues) {
+            digits = digits * 10 + value;
+        }
+        result.r1 = mValues.size();
+        result.r2 = digits;
+    }
+}
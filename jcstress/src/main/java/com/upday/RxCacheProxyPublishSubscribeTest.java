@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+import static rx.schedulers.Schedulers.immediate;
+
+@JCStressTest
+@Description("A subscriber joining during publish receives the cached value and the update.")
+@Outcome(id = "1, 2", expect = ACCEPTABLE, desc = "Subscribed after the publication, the snapshot supersedes the initial value.")
+@Outcome(id = "2, 12", expect = ACCEPTABLE, desc = "Subscribed before the publication.")
+@Outcome(id = "1, 1", expect = FORBIDDEN,
+        desc = "Lost update: stale cached value read, published value missed.")
+@Outcome(id = "2, 22", expect = FORBIDDEN,
+        desc = "Duplicate: new cached value read and published value received.")
+@State
+public class RxCacheProxyPublishSubscribeTest {
+
+    private final RecordingSubscriber mSubscriber = new RecordingSubscriber();
+
+    private final RxCacheProxy<Integer> mProxy = RxCacheProxy.create(1);
+
+    @Actor
+    public void publish() {
+        mProxy.publish(2);
+    }
+
+    @Actor
+    public void subscribe() {
+        mProxy.asObservable(immediate()).unsafeSubscribe(mSubscriber);
+    }
+
+    @Arbiter
+    public void arbiter(final II_Result result) {
+        mSubscriber.record(result);
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+import static com.upday.Preconditions.checkNotNull;
+
+/**
+ * Scheduler running every {@link Worker} on a single event loop thread.
+ *
+ * As the proxies create a worker per subscriber, all values of a subscriber
+ * are delivered by the same thread and stay in the cache of its core.
+ * This includes the values emitted when the subscriber requests more from
+ * another thread, the request is handed over to the worker.
+ * Workers are assigned to the loops round-robin. An idle loop spins
+ * for a while before it parks, so values published shortly after each
+ * other are not delayed by waking the thread up.
+ */
+public final class EventLoopScheduler extends Scheduler {
+
+    /**
+     * Number of empty polls before an idle loop parks.
+     */
+    public static final int DEFAULT_SPIN_COUNT = 1000;
+
+    /**
+     * Number of delayed tasks from which a loop removes the cancelled ones.
+     */
+    private static final int MIN_PURGE_THRESHOLD = 64;
+
+    private final EventLoop[] mLoops;
+
+    private final AtomicInteger mNextLoop = new AtomicInteger();
+
+    /**
+     * Creates a scheduler with a loop per available processor.
+     *
+     * @return the scheduler
+     */
+    public static EventLoopScheduler create() {
+        return create(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a scheduler with the given number of loops.
+     *
+     * @param loopCount the number of loop threads
+     * @return the scheduler
+     */
+    public static EventLoopScheduler create(final int loopCount) {
+        return create(loopCount, DEFAULT_SPIN_COUNT);
+    }
+
+    /**
+     * Creates a scheduler with the given number of loops.
+     *
+     * @param loopCount the number of loop threads
+     * @param spinCount the number of empty polls before an idle loop parks
+     * @return the scheduler
+     */
+    public static EventLoopScheduler create(final int loopCount, final int spinCount) {
+        if (loopCount <= 0) {
+            throw new IllegalArgumentException("Loop count has to be positive.");
+        }
+        if (spinCount < 0) {
+            throw new IllegalArgumentException("Spin count cannot be negative.");
+        }
+
+        return new EventLoopScheduler(loopCount, spinCount);
+    }
+
+    private EventLoopScheduler(final int loopCount, final int spinCount) {
+        mLoops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            mLoops[i] = new EventLoop("RxProxyEventLoop-" + (i + 1), spinCount);
+        }
+    }
+
+    @Override
+    public Worker createWorker() {
+        final int index = (mNextLoop.getAndIncrement() & Integer.MAX_VALUE) % mLoops.length;
+        return new EventLoopWorker(mLoops[index]);
+    }
+
+    /**
+     * Stops all loop threads. Tasks that were not run yet are dropped.
+     */
+    public void shutdown() {
+        for (EventLoop loop : mLoops) {
+            loop.shutdown();
+        }
+    }
+
+    /**
+     * Thread running the tasks of its workers.
+     */
+    static final class EventLoop implements Runnable {
+
+        private final MpscLinkedQueue<Runnable> mTasks = new MpscLinkedQueue<Runnable>();
+
+        /**
+         * Delayed tasks ordered by their deadline, accessed only by the loop thread.
+         */
+        private final PriorityQueue<DelayedTask> mDelayedTasks = new PriorityQueue<DelayedTask>();
+
+        private final int mSpinCount;
+
+        private final Thread mThread;
+
+        private volatile boolean mParked;
+
+        private volatile boolean mRunning = true;
+
+        private long mDelayedTaskCount;
+
+        /**
+         * Size of the delayed tasks at which the cancelled ones are removed, so that
+         * tasks cancelled long before their deadline do not pile up.
+         */
+        private int mPurgeThreshold = MIN_PURGE_THRESHOLD;
+
+        EventLoop(final String name, final int spinCount) {
+            mSpinCount = spinCount;
+            mThread = new Thread(this, name);
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+
+        void execute(final Runnable task) {
+            mTasks.offer(task);
+            // Pairs with the check of the queue after the loop announced parking
+            if (mParked) {
+                LockSupport.unpark(mThread);
+            }
+        }
+
+        void executeDelayed(final ScheduledAction task, final long deadline) {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    mDelayedTasks.offer(new DelayedTask(task, deadline, mDelayedTaskCount++));
+                    if (mDelayedTasks.size() >= mPurgeThreshold) {
+                        purgeCancelledTasks();
+                    }
+                }
+            });
+        }
+
+        int delayedTaskCount() {
+            return mDelayedTasks.size();
+        }
+
+        boolean isLoopThread() {
+            return Thread.currentThread() == mThread;
+        }
+
+        void shutdown() {
+            mRunning = false;
+            LockSupport.unpark(mThread);
+        }
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+            while (mRunning) {
+                final Runnable task = mTasks.poll();
+                if (task != null) {
+                    task.run();
+                    idleCount = 0;
+                } else if (runDueTasks()) {
+                    idleCount = 0;
+                } else if (idleCount < mSpinCount) {
+                    ++idleCount;
+                } else {
+                    park();
+                    idleCount = 0;
+                }
+            }
+        }
+
+        private boolean runDueTasks() {
+            final DelayedTask first = firstDelayedTask();
+            if (first == null || first.mDeadline - System.nanoTime() > 0) {
+                return false;
+            }
+            mDelayedTasks.poll().mTask.run();
+            return true;
+        }
+
+        /**
+         * Returns the first delayed task that was not cancelled, so that the loop
+         * does not wake up for cancelled tasks.
+         */
+        private DelayedTask firstDelayedTask() {
+            DelayedTask first;
+            while ((first = mDelayedTasks.peek()) != null && first.mTask.isCancelled()) {
+                mDelayedTasks.poll();
+            }
+            return first;
+        }
+
+        private void purgeCancelledTasks() {
+            final Iterator<DelayedTask> tasks = mDelayedTasks.iterator();
+            while (tasks.hasNext()) {
+                if (tasks.next().mTask.isCancelled()) {
+                    tasks.remove();
+                }
+            }
+            mPurgeThreshold = Math.max(MIN_PURGE_THRESHOLD, 2 * mDelayedTasks.size());
+        }
+
+        private void park() {
+            mParked = true;
+            if (mTasks.isEmpty() && mRunning) {
+                final DelayedTask first = firstDelayedTask();
+                if (first == null) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, first.mDeadline - System.nanoTime());
+                }
+            }
+            mParked = false;
+        }
+    }
+
+    /**
+     * Task that is due at its deadline, tasks with the same deadline run in the order of scheduling.
+     */
+    static final class DelayedTask implements Comparable<DelayedTask> {
+
+        final ScheduledAction mTask;
+
+        final long mDeadline;
+
+        private final long mSequence;
+
+        DelayedTask(final ScheduledAction task, final long deadline, final long sequence) {
+            mTask = task;
+            mDeadline = deadline;
+            mSequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final DelayedTask other) {
+            final long difference = mDeadline - other.mDeadline;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+
+    static final class EventLoopWorker extends Worker {
+
+        private final EventLoop mLoop;
+
+        private volatile boolean mUnsubscribed;
+
+        EventLoopWorker(final EventLoop loop) {
+            mLoop = loop;
+        }
+
+        @Override
+        public Subscription schedule(final Action0 action) {
+            checkNotNull(action, "Action cannot be null.");
+            if (mUnsubscribed) {
+                return Subscriptions.unsubscribed();
+            }
+
+            final ScheduledAction scheduledAction = new ScheduledAction(action, this);
+            mLoop.execute(scheduledAction);
+            return scheduledAction;
+        }
+
+        @Override
+        public Subscription schedule(final Action0 action, final long delayTime, final TimeUnit unit) {
+            checkNotNull(action, "Action cannot be null.");
+            if (delayTime <= 0) {
+                return schedule(action);
+            }
+            if (mUnsubscribed) {
+                return Subscriptions.unsubscribed();
+            }
+
+            final ScheduledAction scheduledAction = new ScheduledAction(action, this);
+            mLoop.executeDelayed(scheduledAction, System.nanoTime() + unit.toNanos(delayTime));
+            return scheduledAction;
+        }
+
+        @Override
+        public void unsubscribe() {
+            mUnsubscribed = true;
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return mUnsubscribed;
+        }
+
+        /**
+         * Returns the number of delayed tasks of the loop, has to be called on the loop thread.
+         */
+        int delayedTaskCount() {
+            return mLoop.delayedTaskCount();
+        }
+
+        /**
+         * Returns whether the caller runs on the loop thread of the worker.
+         */
+        boolean isLoopThread() {
+            return mLoop.isLoopThread();
+        }
+    }
+
+    /**
+     * Action that is skipped when it or its worker was unsubscribed before it ran.
+     */
+    static final class ScheduledAction implements Runnable, Subscription {
+
+        private final Action0 mAction;
+
+        private final EventLoopWorker mWorker;
+
+        private volatile boolean mUnsubscribed;
+
+        ScheduledAction(final Action0 action, final EventLoopWorker worker) {
+            mAction = action;
+            mWorker = worker;
+        }
+
+        @Override
+        public void run() {
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                mAction.call();
+            } catch (Throwable e) {
+                // The loop keeps running the tasks of the other workers
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            mUnsubscribed = true;
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return mUnsubscribed;
+        }
+
+        boolean isCancelled() {
+            return mUnsubscribed || mWorker.isUnsubscribed();
+        }
+    }
+
+}
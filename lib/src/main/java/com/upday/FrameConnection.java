@@ -0,0 +1,314 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.upday.Preconditions.checkNotNull;
+
+/**
+ * Non-blocking connection exchanging length-prefixed frames.
+ *
+ * A frame consists of its length, its type and its body.
+ * The length covers the type and the body.
+ */
+final class FrameConnection implements NetworkLoop.Handler {
+
+    /**
+     * Batch of values: the number of values, then the length and bytes of each value.
+     */
+    static final byte DATA = 1;
+
+    /**
+     * Number of values the receiver is ready to receive.
+     */
+    static final byte CREDIT = 2;
+
+    /**
+     * Single value to publish to the remote proxy.
+     */
+    static final byte PUBLISH = 3;
+
+    static final int HEADER_SIZE = 5;
+
+    static final int MAX_FRAME_SIZE = 64 * 1024;
+
+    private final NetworkLoop mLoop;
+
+    private final SocketChannel mChannel;
+
+    private final Listener mListener;
+
+    private final ByteBuffer mInbound = ByteBuffer.allocate(MAX_FRAME_SIZE);
+
+    private final Queue<ByteBuffer> mOutbound = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private final AtomicBoolean mFlushScheduled = new AtomicBoolean();
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            mFlushScheduled.set(false);
+            try {
+                flush();
+            } catch (IOException e) {
+                close(e);
+            }
+        }
+    };
+
+    private SelectionKey mKey;
+
+    /**
+     * Written on the loop thread, read by senders to discard frames after close.
+     */
+    private volatile boolean mClosed;
+
+    FrameConnection(final NetworkLoop loop, final SocketChannel channel, final Listener listener) {
+        mLoop = checkNotNull(loop, "Loop cannot be null.");
+        mChannel = checkNotNull(channel, "Channel cannot be null.");
+        mListener = checkNotNull(listener, "Listener cannot be null.");
+    }
+
+    /**
+     * Allocates a frame and writes its header.
+     *
+     * @param type     the type of the frame
+     * @param bodySize the size of the body
+     * @return the frame positioned at the start of the body
+     */
+    static ByteBuffer frame(final byte type, final int bodySize) {
+        final ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + bodySize);
+        frame.putInt(1 + bodySize);
+        frame.put(type);
+        return frame;
+    }
+
+    static ByteBuffer creditFrame(final long credit) {
+        final ByteBuffer frame = frame(CREDIT, 8);
+        frame.putLong(credit);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Registers the connected channel on the loop, so that frames are received.
+     */
+    void open() {
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mChannel.configureBlocking(false);
+                    onConnected();
+                } catch (IOException e) {
+                    close(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Connects the channel on the loop without blocking. Frames sent in the meantime
+     * are flushed once connected, a failed connection closes the connection.
+     *
+     * @param address the address to connect to
+     */
+    void connect(final InetSocketAddress address) {
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mChannel.configureBlocking(false);
+                    if (mChannel.connect(address)) {
+                        onConnected();
+                    } else {
+                        mKey = mChannel.register(mLoop.selector(), SelectionKey.OP_CONNECT, FrameConnection.this);
+                    }
+                } catch (IOException e) {
+                    close(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends the frame. Can be called from any thread.
+     *
+     * @param frame the flipped frame
+     * @return {@code false} when the connection is closed and the frame was discarded
+     */
+    boolean send(final ByteBuffer frame) {
+        if (mClosed) {
+            return false;
+        }
+
+        mOutbound.offer(frame);
+        if (mClosed) {
+            // Closed after the check, the loop does not flush any more
+            mOutbound.clear();
+            return false;
+        }
+        if (mFlushScheduled.compareAndSet(false, true)) {
+            mLoop.execute(mFlushTask);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the connection without notifying a failure. Can be called from any thread.
+     */
+    void closeLater() {
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                close(null);
+            }
+        });
+    }
+
+    @Override
+    public void onReady(final SelectionKey key) throws IOException {
+        if (key.isConnectable()) {
+            mChannel.finishConnect();
+            onConnected();
+            return;
+        }
+        if (key.isReadable()) {
+            read();
+        }
+        if (key.isValid() && key.isWritable()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void close(final IOException cause) {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        if (mKey != null) {
+            mKey.cancel();
+        }
+        try {
+            mChannel.close();
+        } catch (IOException e) {
+            // The connection is gone anyway
+        }
+        mOutbound.clear();
+        mListener.onClosed(cause);
+    }
+
+    private void onConnected() throws IOException {
+        mChannel.socket().setTcpNoDelay(true);
+        if (mKey == null) {
+            mKey = mChannel.register(mLoop.selector(), SelectionKey.OP_READ, this);
+        }
+        flush();
+    }
+
+    private void read() throws IOException {
+        if (mChannel.read(mInbound) < 0) {
+            close(new EOFException("Connection closed by peer."));
+            return;
+        }
+
+        mInbound.flip();
+        while (mInbound.remaining() >= HEADER_SIZE) {
+            final int start = mInbound.position();
+            final int length = mInbound.getInt(start);
+            if (length < 1 || length > MAX_FRAME_SIZE - 4) {
+                throw new IOException("Invalid frame length " + length + ".");
+            }
+            if (mInbound.remaining() < 4 + length) {
+                break;
+            }
+
+            final int end = start + 4 + length;
+            final byte type = mInbound.get(start + 4);
+            final int limit = mInbound.limit();
+            mInbound.position(start + HEADER_SIZE);
+            mInbound.limit(end);
+            mListener.onFrame(type, mInbound);
+            mInbound.limit(limit);
+            mInbound.position(end);
+
+            if (mClosed) {
+                return;
+            }
+        }
+        mInbound.compact();
+    }
+
+    private void flush() throws IOException {
+        if (mKey == null || mClosed || !mChannel.isConnected()) {
+            return;
+        }
+
+        ByteBuffer frame;
+        while ((frame = mOutbound.peek()) != null) {
+            mChannel.write(frame);
+            if (frame.hasRemaining()) {
+                mKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            mOutbound.poll();
+        }
+        mKey.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Listener of a connection, called on the loop thread.
+     */
+    interface Listener {
+
+        /**
+         * Called for every received frame.
+         *
+         * @param type the type of the frame
+         * @param body the body of the frame, valid only during the call
+         * @throws IOException if the frame is malformed, which closes the connection
+         */
+        void onFrame(byte type, ByteBuffer body) throws IOException;
+
+        /**
+         * Called once the connection is closed.
+         *
+         * @param cause the failure that closed the connection or {@code null} when closed locally
+         */
+        void onClosed(IOException cause);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.upday.Preconditions.checkNotNull;
+
+/**
+ * Lock-free unbounded queue for multiple producers and a single consumer.
+ *
+ * The code is based on the intrusive MPSC node queue by Dmitry Vyukov.
+ */
+final class MpscLinkedQueue<E> {
+
+    private final AtomicReference<Node<E>> mProducerNode;
+
+    /**
+     * Node preceding the first element, accessed only by the consumer.
+     */
+    private Node<E> mConsumerNode;
+
+    MpscLinkedQueue() {
+        final Node<E> stub = new Node<E>(null);
+        mConsumerNode = stub;
+        mProducerNode = new AtomicReference<Node<E>>(stub);
+    }
+
+    /**
+     * Adds the element to the queue. Can be called from any thread.
+     *
+     * @param element non null element
+     */
+    void offer(final E element) {
+        checkNotNull(element, "Element cannot be null.");
+
+        final Node<E> node = new Node<E>(element);
+        final Node<E> previous = mProducerNode.getAndSet(node);
+        previous.lazySet(node);
+    }
+
+    /**
+     * Removes the first element. Must be called from the consumer only.
+     *
+     * @return the first element or {@code null} if the queue is empty
+     */
+    E poll() {
+        Node<E> next = mConsumerNode.get();
+        if (next == null) {
+            if (mConsumerNode == mProducerNode.get()) {
+                return null;
+            }
+            // A producer swapped the node but has not linked it yet
+            do {
+                next = mConsumerNode.get();
+            } while (next == null);
+        }
+
+        final E element = next.mElement;
+        next.mElement = null;
+        mConsumerNode = next;
+        return element;
+    }
+
+    /**
+     * Returns {@code true} if the queue has no elements. Must be called from the consumer only.
+     *
+     * @return {@code true} if the queue has no elements
+     */
+    boolean isEmpty() {
+        return mConsumerNode == mProducerNode.get();
+    }
+
+    /**
+     * Node referencing the next node.
+     */
+    private static final class Node<E> extends AtomicReference<Node<E>> {
+
+        private static final long serialVersionUID = -2366291416497434457L;
+
+        private E mElement;
+
+        Node(final E element) {
+            mElement = element;
+        }
+    }
+
+}
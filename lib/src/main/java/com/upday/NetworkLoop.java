@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread dispatching the readiness of non-blocking channels to their handlers.
+ *
+ * Channels have to be registered and accessed on the loop thread,
+ * other threads hand their work over by {@link #execute(Runnable)}.
+ */
+final class NetworkLoop implements Runnable {
+
+    private final Selector mSelector;
+
+    private final Queue<Runnable> mTasks = new ConcurrentLinkedQueue<Runnable>();
+
+    private final Thread mThread;
+
+    private volatile boolean mRunning = true;
+
+    NetworkLoop(final String name) throws IOException {
+        mSelector = Selector.open();
+        mThread = new Thread(this, name);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    Selector selector() {
+        return mSelector;
+    }
+
+    /**
+     * Runs the task on the loop thread. Tasks executed after the loop stopped are not run.
+     *
+     * @param task the task to run
+     */
+    void execute(final Runnable task) {
+        mTasks.offer(task);
+        mSelector.wakeup();
+    }
+
+    /**
+     * Stops the loop and closes all registered channels.
+     */
+    void shutdown() {
+        mRunning = false;
+        mSelector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (mRunning) {
+                mSelector.select();
+                runTasks();
+                dispatchSelectedKeys();
+            }
+        } catch (IOException e) {
+            // The selector is broken, the handlers are closed below
+        } finally {
+            // Pending tasks register their channels, so that they are closed as well
+            runTasks();
+            closeAll();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = mTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void dispatchSelectedKeys() {
+        final Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+
+            final Handler handler = (Handler) key.attachment();
+            try {
+                if (key.isValid()) {
+                    handler.onReady(key);
+                }
+            } catch (IOException e) {
+                handler.close(e);
+            } catch (CancelledKeyException e) {
+                handler.close(null);
+            } catch (RuntimeException e) {
+                // E.g. a failing codec must not stop the other channels of the loop
+                handler.close(new IOException(e));
+            }
+        }
+    }
+
+    private void closeAll() {
+        try {
+            for (SelectionKey key : mSelector.keys()) {
+                ((Handler) key.attachment()).close(null);
+            }
+            mSelector.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    /**
+     * Handler of a channel registered on the loop.
+     */
+    interface Handler {
+
+        /**
+         * Called on the loop thread when the channel is ready for the operations of its key.
+         *
+         * @param key the key of the channel
+         * @throws IOException if the channel failed
+         */
+        void onReady(SelectionKey key) throws IOException;
+
+        /**
+         * Called on the loop thread to close the channel.
+         *
+         * @param cause the failure that closed the channel or {@code null} when closed locally
+         */
+        void close(IOException cause);
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.upday.Preconditions.checkNotNull;
+
+/**
+ * Buffer of the values a single subscriber receives from a proxy.
+ *
+ * Buffers created by {@link RxPublishProxy#subscribeBuffer(Runnable)} let adapters
+ * to other reactive libraries receive the values of a proxy without an
+ * {@link rx.Observable} in between.
+ *
+ * Values can be offered from any thread, but they have to be polled by one
+ * thread at a time. Versioned values are polled without gaps in the order of
+ * their versions, starting with the snapshot the subscriber received when it
+ * subscribed. A value that overtook an older one is held until the older one
+ * arrives. Only values older than the snapshot are dropped, as the snapshot
+ * supersedes them. Unversioned values are polled in the order they were offered.
+ */
+public final class ProxyBuffer<T> {
+
+    private final MpscLinkedQueue<Versioned<T>> mQueue = new MpscLinkedQueue<Versioned<T>>();
+
+    private volatile Versioned<T> mSnapshot;
+
+    /**
+     * Fields accessed only by the polling thread.
+     */
+    private boolean mStarted;
+
+    private long mVersion;
+
+    private TreeMap<Long, Versioned<T>> mHeldValues;
+
+    private volatile Runnable mCancelAction;
+
+    ProxyBuffer() {
+    }
+
+    /**
+     * Adds the value to the buffer. Can be called from any thread.
+     *
+     * @param value the value with its version
+     */
+    void offer(final Versioned<T> value) {
+        checkNotNull(value, "Value cannot be null.");
+
+        mQueue.offer(value);
+    }
+
+    /**
+     * Sets the snapshot of a proxy that keeps versions. Versioned values are held
+     * until the snapshot is set. Can be called from any thread, but only once.
+     *
+     * @param snapshot the snapshot, with a {@code null} value when the proxy has none
+     */
+    void start(final Versioned<T> snapshot) {
+        checkNotNull(snapshot, "Snapshot cannot be null.");
+
+        mSnapshot = snapshot;
+    }
+
+    void setCancelAction(final Runnable cancelAction) {
+        mCancelAction = cancelAction;
+    }
+
+    /**
+     * Stops adding published values to the buffer. Values that were already
+     * added can still be polled.
+     */
+    public void cancel() {
+        final Runnable cancelAction = mCancelAction;
+        if (cancelAction != null) {
+            cancelAction.run();
+        }
+    }
+
+    /**
+     * Returns the next value of the buffer. Has to be called by one thread at a time.
+     *
+     * @return the next value or {@code null} when there is none yet
+     */
+    public T poll() {
+        if (!mStarted) {
+            final Versioned<T> snapshot = mSnapshot;
+            if (snapshot != null) {
+                mStarted = true;
+                mVersion = snapshot.getVersion();
+                if (snapshot.getValue() != null) {
+                    --mVersion;
+                    hold(snapshot);
+                }
+            }
+        }
+
+        for (; ; ) {
+            final Versioned<T> held = pollHeld();
+            if (held != null) {
+                return held.getValue();
+            }
+
+            final Versioned<T> value = mQueue.poll();
+            if (value == null) {
+                return null;
+            }
+
+            final long version = value.getVersion();
+            if (version == Versioned.UNVERSIONED) {
+                return value.getValue();
+            }
+            if (mStarted && version == mVersion + 1) {
+                mVersion = version;
+                return value.getValue();
+            }
+            if (!mStarted || version > mVersion) {
+                hold(value);
+            }
+            // Otherwise the value was already polled or is older than the snapshot
+        }
+    }
+
+    private void hold(final Versioned<T> value) {
+        if (mHeldValues == null) {
+            mHeldValues = new TreeMap<Long, Versioned<T>>();
+        }
+        if (!mHeldValues.containsKey(value.getVersion())) {
+            mHeldValues.put(value.getVersion(), value);
+        }
+    }
+
+    /**
+     * Returns the held value that follows the last polled version, dropping the
+     * held values that are not newer than it.
+     */
+    private Versioned<T> pollHeld() {
+        if (!mStarted || mHeldValues == null) {
+            return null;
+        }
+
+        Map.Entry<Long, Versioned<T>> first;
+        while ((first = mHeldValues.firstEntry()) != null && first.getKey() <= mVersion) {
+            mHeldValues.pollFirstEntry();
+        }
+        if (first != null && first.getKey() == mVersion + 1) {
+            mHeldValues.pollFirstEntry();
+            mVersion = first.getKey();
+            return first.getValue();
+        }
+        return null;
+    }
+
+}
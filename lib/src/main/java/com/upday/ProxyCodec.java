@@ -0,0 +1,53 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values of a proxy to bytes and back, so they can be shared outside of the JVM.
+ */
+public interface ProxyCodec<T> {
+
+    /**
+     * Writes the value to the buffer, starting at its position.
+     *
+     * @param value  non null value to encode
+     * @param buffer the buffer to write to
+     * @throws java.nio.BufferOverflowException if the value does not fit into the buffer
+     */
+    void encode(T value, ByteBuffer buffer);
+
+    /**
+     * Reads a value from the remaining bytes of the buffer.
+     * The buffer must not be retained as its content can be overwritten afterwards.
+     *
+     * @param buffer the buffer to read from
+     * @return non null decoded value
+     */
+    T decode(ByteBuffer buffer);
+
+}
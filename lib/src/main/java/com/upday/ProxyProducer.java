@@ -25,14 +25,14 @@
 
 package com.upday;
 
-import java.util.Queue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import rx.Producer;
+import rx.Scheduler.Worker;
 import rx.Subscriber;
+import rx.functions.Action0;
 import rx.internal.operators.BackpressureUtils;
-import rx.internal.util.unsafe.SpscLinkedQueue;
 
 import static com.upday.Preconditions.checkNotNull;
 
@@ -47,7 +47,11 @@ final class ProxyProducer<T> extends AtomicLong implements Producer {
 
     private final Subscriber<? super T> mSubscriber;
 
-    private final Queue<T> mQueue = new SpscLinkedQueue<T>();
+    /**
+     * Values are offered by the scheduler's worker and polled by the thread that
+     * currently drains, so the buffer is used by one polling thread at a time.
+     */
+    private final ProxyBuffer<T> mBuffer = new ProxyBuffer<T>();
 
     /**
      * Using the Integer as the possibility of overflow is really small and might
@@ -55,16 +59,46 @@ final class ProxyProducer<T> extends AtomicLong implements Producer {
      */
     private final AtomicInteger mWip = new AtomicInteger();
 
+    /**
+     * Worker the producer drains on when requested from other threads, {@code null}
+     * to drain on the requesting thread.
+     */
+    private final EventLoopScheduler.EventLoopWorker mDrainWorker;
+
+    private final Action0 mDrainAction = new Action0() {
+        @Override
+        public void call() {
+            drain();
+        }
+    };
+
     ProxyProducer(final Subscriber<? super T> subscriber) {
+        this(subscriber, null);
+    }
+
+    private ProxyProducer(final Subscriber<? super T> subscriber,
+                          final EventLoopScheduler.EventLoopWorker drainWorker) {
         checkNotNull(subscriber, "Subscriber cannot be null.");
 
         mSubscriber = subscriber;
+        mDrainWorker = drainWorker;
     }
 
-    ProxyProducer(final Subscriber<? super T> subscriber, final T initialValue) {
-        this(subscriber);
-
-        offer(checkNotNull(initialValue, "Initial value cannot be null."));
+    /**
+     * Creates a producer for values offered on the worker. A worker of an
+     * {@link EventLoopScheduler} is pinned to its loop thread, so the producer
+     * drains on the worker also when it is requested or started from other threads,
+     * and inline when it already runs on the loop thread.
+     *
+     * @param subscriber the subscriber of the values
+     * @param worker     the worker the values are offered on
+     * @return the producer
+     */
+    static <T> ProxyProducer<T> create(final Subscriber<? super T> subscriber, final Worker worker) {
+        return new ProxyProducer<T>(subscriber,
+                                    worker instanceof EventLoopScheduler.EventLoopWorker
+                                    ? (EventLoopScheduler.EventLoopWorker) worker
+                                    : null);
     }
 
     @Override
@@ -75,19 +109,50 @@ final class ProxyProducer<T> extends AtomicLong implements Producer {
 
         if (n > 0) {
             BackpressureUtils.getAndAddRequest(this, n);
-            drain();
+            drainOnWorker();
         }
     }
 
     void offer(final T value) {
         checkNotNull(value, "Value cannot be null.");
 
-        mQueue.offer(value);
+        offer(Versioned.unversioned(value));
+    }
+
+    /**
+     * Offers a value that is emitted in the order of its version.
+     *
+     * @param value the value with its version
+     */
+    void offer(final Versioned<T> value) {
+        checkNotNull(value, "Value cannot be null.");
+
+        mBuffer.offer(value);
         drain();
     }
 
+    /**
+     * Starts emitting versioned values from the snapshot of the proxy.
+     *
+     * @param snapshot the snapshot, with a {@code null} value when the proxy has none
+     * @see ProxyBuffer#start(Versioned)
+     */
+    void start(final Versioned<T> snapshot) {
+        mBuffer.start(snapshot);
+        drainOnWorker();
+    }
+
+    private void drainOnWorker() {
+        if (mDrainWorker == null || mDrainWorker.isLoopThread()) {
+            drain();
+        } else {
+            mDrainWorker.schedule(mDrainAction);
+        }
+    }
+
     /**
      * Drains and emits values from queue in a thread-safe non-blocking way.
+     * Versioned values are emitted without gaps in the order of their versions.
      */
     @SuppressWarnings("NestedAssignment")
     private void drain() {
@@ -103,12 +168,12 @@ final class ProxyProducer<T> extends AtomicLong implements Producer {
                 long emitted = 0;
                 T value;
 
-                while (requested != 0 && (value = mQueue.poll()) != null) {
+                while (requested != 0 && (value = mBuffer.poll()) != null) {
                     mSubscriber.onNext(value);
                     if (mSubscriber.isUnsubscribed()) {
                         return;
                     }
-                    ++requested;
+                    --requested;
                     ++emitted;
                 }
                 if (emitted != 0) {
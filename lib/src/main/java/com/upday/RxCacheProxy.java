@@ -27,17 +27,23 @@ package com.upday;
 
 import java.util.concurrent.atomic.AtomicReference;
 
-import rx.Observable;
-import rx.Scheduler;
-
 import static com.upday.Preconditions.checkNotNull;
 
 /**
  * Implementation of IRxProxy that must have initial value.
+ *
+ * Every published value gets the next version, so a subscriber joining during
+ * a publication receives the cached value and later versions without duplicates.
+ * Values published concurrently are emitted in the order of their versions and
+ * none of them is skipped.
  */
 public final class RxCacheProxy<T> extends RxPublishProxy<T> {
 
-    private final AtomicReference<T> mCachedValue = new AtomicReference<T>();
+    /**
+     * Without a value the cache holds the version preceding the first one.
+     */
+    private final AtomicReference<Versioned<T>> mCachedValue =
+            new AtomicReference<Versioned<T>>(Versioned.<T>empty());
 
     public static <T> RxCacheProxy<T> create(final T defaultValue) {
         checkNotNull(defaultValue, "Default value cannot be null.");
@@ -50,22 +56,28 @@ public final class RxCacheProxy<T> extends RxPublishProxy<T> {
     }
 
     private RxCacheProxy(final T value) {
-        mCachedValue.set(value);
+        if (value != null) {
+            mCachedValue.set(new Versioned<T>(Versioned.FIRST_VERSION, value));
+        }
     }
 
     @Override
     public void publish(final T value) {
         checkNotNull(value, "Value cannot be null.");
 
-        mCachedValue.set(value);
-        super.publish(value);
+        Versioned<T> current;
+        Versioned<T> next;
+        do {
+            current = mCachedValue.get();
+            next = current.next(value);
+        } while (!mCachedValue.compareAndSet(current, next));
+
+        dispatch(next);
     }
 
     @Override
-    public Observable<T> asObservable(final Scheduler scheduler) {
-        checkNotNull(scheduler, "Scheduler cannot be null.");
-
-        return Observable.create(new OnSubscribePublisher(scheduler, mCachedValue));
+    Versioned<T> snapshot() {
+        return mCachedValue.get();
     }
 
     /**
@@ -74,7 +86,7 @@ public final class RxCacheProxy<T> extends RxPublishProxy<T> {
      * @return {@code true} when the proxy already has a stored value
      */
     public boolean hasValue() {
-        return mCachedValue.get() != null;
+        return mCachedValue.get().getValue() != null;
     }
 
     /**
@@ -84,6 +96,6 @@ public final class RxCacheProxy<T> extends RxPublishProxy<T> {
      * @return the last value that can be {@code null}
      */
     public T getValue() {
-        return mCachedValue.get();
+        return mCachedValue.get().getValue();
     }
 }
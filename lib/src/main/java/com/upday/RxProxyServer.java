@@ -0,0 +1,336 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.Subscriber;
+import rx.functions.Action0;
+
+import static com.upday.Preconditions.checkNotNull;
+
+/**
+ * Server exposing an {@link RxProxy} to {@link RxRemoteProxy} clients over
+ * a non-blocking socket.
+ *
+ * A connection subscribes to the proxy when the client grants credit for the
+ * first time and requests only as many values as the client granted credit for,
+ * so connections that only publish do not hold any values. Values emitted while the previous batch
+ * is being sent are combined into a single frame.
+ *
+ * Values published by a client are decoded and published to the proxy on a
+ * worker of the scheduler, in the order they were sent. A proxy whose publish
+ * blocks therefore holds up a thread of the scheduler rather than the network
+ * thread shared by all connections.
+ */
+public final class RxProxyServer<T> implements Closeable {
+
+    private final RxProxy<T> mProxy;
+
+    private final ProxyCodec<T> mCodec;
+
+    private final int mMaxValueSize;
+
+    private final Scheduler mScheduler;
+
+    private final NetworkLoop mLoop;
+
+    private final ServerSocketChannel mServerChannel;
+
+    /**
+     * Starts a server for the proxy.
+     *
+     * @param proxy        the proxy to expose
+     * @param address      the address to listen on, port 0 picks a free port
+     * @param codec        the codec of the values
+     * @param maxValueSize maximal size of an encoded value in bytes
+     * @param scheduler    the scheduler the values are encoded and published on
+     * @return the started server
+     * @throws IOException if the server cannot listen on the address
+     */
+    public static <T> RxProxyServer<T> start(final RxProxy<T> proxy,
+                                             final InetSocketAddress address,
+                                             final ProxyCodec<T> codec,
+                                             final int maxValueSize,
+                                             final Scheduler scheduler) throws IOException {
+        checkNotNull(proxy, "Proxy cannot be null.");
+        checkNotNull(address, "Address cannot be null.");
+        checkNotNull(codec, "Codec cannot be null.");
+        checkNotNull(scheduler, "Scheduler cannot be null.");
+        checkMaxValueSize(maxValueSize);
+
+        final RxProxyServer<T> server = new RxProxyServer<T>(proxy, codec, maxValueSize, scheduler);
+        server.listen(address);
+        return server;
+    }
+
+    static void checkMaxValueSize(final int maxValueSize) {
+        // A single value has to fit into a batch frame
+        if (maxValueSize <= 0 || maxValueSize > FrameConnection.MAX_FRAME_SIZE - FrameConnection.HEADER_SIZE - 8) {
+            throw new IllegalArgumentException("Maximal value size is out of range.");
+        }
+    }
+
+    private RxProxyServer(final RxProxy<T> proxy,
+                          final ProxyCodec<T> codec,
+                          final int maxValueSize,
+                          final Scheduler scheduler) throws IOException {
+        mProxy = proxy;
+        mCodec = codec;
+        mMaxValueSize = maxValueSize;
+        mScheduler = scheduler;
+        mLoop = new NetworkLoop("RxProxyServer");
+        mServerChannel = ServerSocketChannel.open();
+    }
+
+    private void listen(final InetSocketAddress address) throws IOException {
+        try {
+            mServerChannel.socket().bind(address);
+            mServerChannel.configureBlocking(false);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mServerChannel.register(mLoop.selector(), SelectionKey.OP_ACCEPT, new Acceptor());
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the address the server listens on.
+     *
+     * @return the local address
+     */
+    public InetSocketAddress getLocalAddress() {
+        return (InetSocketAddress) mServerChannel.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * Stops listening and closes all connections.
+     */
+    @Override
+    public void close() {
+        mLoop.shutdown();
+        try {
+            mServerChannel.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    final class Acceptor implements NetworkLoop.Handler {
+
+        @Override
+        public void onReady(final SelectionKey key) throws IOException {
+            SocketChannel channel;
+            while ((channel = mServerChannel.accept()) != null) {
+                new Session(channel);
+            }
+        }
+
+        @Override
+        public void close(final IOException cause) {
+            try {
+                mServerChannel.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    /**
+     * Subscription of a single client, subscribing and requesting values when the client grants credit.
+     */
+    final class Session extends Subscriber<T> implements FrameConnection.Listener {
+
+        private final FrameConnection mConnection;
+
+        private final ByteBuffer mScratch = ByteBuffer.allocate(mMaxValueSize);
+
+        private final Queue<byte[]> mPending = new ConcurrentLinkedQueue<byte[]>();
+
+        private final AtomicBoolean mBatchScheduled = new AtomicBoolean();
+
+        private final Runnable mBatchTask = new Runnable() {
+            @Override
+            public void run() {
+                mBatchScheduled.set(false);
+                sendBatches();
+            }
+        };
+
+        /**
+         * Accessed only on the loop thread.
+         */
+        private boolean mSubscribed;
+
+        /**
+         * Worker publishing the values of the client, created with the first one.
+         * Accessed only on the loop thread.
+         */
+        private Worker mPublishWorker;
+
+        Session(final SocketChannel channel) {
+            mConnection = new FrameConnection(mLoop, channel, this);
+            mConnection.open();
+        }
+
+        @Override
+        public void onStart() {
+            // Nothing is emitted before the client grants credit
+            request(0);
+        }
+
+        @Override
+        public void onNext(final T value) {
+            try {
+                mScratch.clear();
+                mCodec.encode(value, mScratch);
+                mScratch.flip();
+            } catch (RuntimeException e) {
+                unsubscribe();
+                mConnection.closeLater();
+                return;
+            }
+
+            final byte[] bytes = new byte[mScratch.remaining()];
+            mScratch.get(bytes);
+            mPending.offer(bytes);
+            if (mBatchScheduled.compareAndSet(false, true)) {
+                mLoop.execute(mBatchTask);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            mConnection.closeLater();
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            mConnection.closeLater();
+        }
+
+        @Override
+        public void onFrame(final byte type, final ByteBuffer body) {
+            if (type == FrameConnection.CREDIT) {
+                final long credit = body.getLong();
+                if (!mSubscribed) {
+                    mSubscribed = true;
+                    mProxy.asObservable(mScheduler).unsafeSubscribe(this);
+                }
+                request(credit);
+            } else if (type == FrameConnection.PUBLISH) {
+                publishLater(body);
+            }
+        }
+
+        @Override
+        public void onClosed(final IOException cause) {
+            unsubscribe();
+            if (mPublishWorker != null) {
+                // Values received before the connection closed are still published
+                final Worker worker = mPublishWorker;
+                worker.schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        worker.unsubscribe();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Copies the value out of the frame, which is valid only during the call,
+         * and publishes it on the worker.
+         */
+        private void publishLater(final ByteBuffer body) {
+            if (mPublishWorker == null) {
+                mPublishWorker = mScheduler.createWorker();
+            }
+
+            final byte[] bytes = new byte[body.remaining()];
+            body.get(bytes);
+            mPublishWorker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    try {
+                        mProxy.publish(mCodec.decode(ByteBuffer.wrap(bytes)));
+                    } catch (RuntimeException e) {
+                        mConnection.closeLater();
+                    }
+                }
+            });
+        }
+
+        private void sendBatches() {
+            final int maxBodySize = FrameConnection.MAX_FRAME_SIZE - FrameConnection.HEADER_SIZE;
+            while (!mPending.isEmpty()) {
+                final List<byte[]> batch = new ArrayList<byte[]>();
+                int bodySize = 4;
+                byte[] bytes;
+                while ((bytes = mPending.peek()) != null && bodySize + 4 + bytes.length <= maxBodySize) {
+                    batch.add(mPending.poll());
+                    bodySize += 4 + bytes.length;
+                }
+
+                final ByteBuffer frame = FrameConnection.frame(FrameConnection.DATA, bodySize);
+                frame.putInt(batch.size());
+                for (byte[] value : batch) {
+                    frame.putInt(value.length);
+                    frame.put(value);
+                }
+                frame.flip();
+                if (!mConnection.send(frame)) {
+                    mPending.clear();
+                    return;
+                }
+            }
+        }
+    }
+
+}
@@ -26,9 +26,12 @@
 package com.upday;
 
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 
 import rx.Observable;
 import rx.Scheduler;
@@ -47,6 +50,13 @@ public class RxPublishProxy<T> implements RxProxy<T> {
 
     private final Collection<Callback<T>> mCallbacks = new CopyOnWriteArrayList<Callback<T>>();
 
+    /**
+     * Weak callbacks whose subscriber has been garbage collected.
+     */
+    private final ReferenceQueue<Object> mCollectedCallbacks = new ReferenceQueue<Object>();
+
+    private final AtomicLong mReclaimedCount = new AtomicLong();
+
     public static <T> RxPublishProxy<T> create() {
         return new RxPublishProxy<T>();
     }
@@ -58,16 +68,96 @@ public class RxPublishProxy<T> implements RxProxy<T> {
     public void publish(final T value) {
         checkNotNull(value, "Value cannot be null.");
 
-        for (Callback<T> callback : mCallbacks) {
-            callback.notify(value);
-        }
+        dispatch(Versioned.unversioned(value));
     }
 
     @Override
     public Observable<T> asObservable(final Scheduler scheduler) {
         checkNotNull(scheduler, "Scheduler cannot be null.");
 
-        return Observable.create(new OnSubscribePublisher(scheduler, new AtomicReference<T>()));
+        return Observable.create(new OnSubscribePublisher(scheduler, false));
+    }
+
+    /**
+     * Returns a stream of proxied values on the {@link Scheduler} like
+     * {@link #asObservable(Scheduler)}, but the proxy references its subscribers weakly.
+     *
+     * A subscriber that was garbage collected without unsubscribing stops receiving
+     * values, and its worker and buffer are released by the next {@link #publish(Object)}.
+     * The subscriber therefore has to be referenced for as long as it should receive values.
+     *
+     * @return a non null stream of published values on the {@link Scheduler}
+     */
+    public Observable<T> asWeakObservable(final Scheduler scheduler) {
+        checkNotNull(scheduler, "Scheduler cannot be null.");
+
+        return Observable.create(new OnSubscribePublisher(scheduler, true));
+    }
+
+    /**
+     * Subscribes a buffer to the proxy, which is the extension point for adapters
+     * to other reactive libraries. The buffer receives the values in the same order
+     * as the subscribers of {@link #asObservable(Scheduler)} do, starting with the
+     * current value of a caching proxy.
+     *
+     * @param onValue called after a value was added to the buffer, on the publishing
+     *                thread or on the calling thread for the current value
+     * @return the buffer to poll the values from, cancel it to stop receiving values
+     */
+    public ProxyBuffer<T> subscribeBuffer(final Runnable onValue) {
+        checkNotNull(onValue, "Callback cannot be null.");
+
+        final ProxyBuffer<T> buffer = new ProxyBuffer<T>();
+        final Callback<T> callback = new Callback<T>() {
+            @Override
+            public void notify(final Versioned<T> value) {
+                buffer.offer(value);
+                onValue.run();
+            }
+        };
+        addCallback(callback);
+        buffer.setCancelAction(new Runnable() {
+            @Override
+            public void run() {
+                removeCallback(callback);
+            }
+        });
+
+        // Read after the callback is registered, like for the subscribers of an observable
+        final Versioned<T> snapshot = snapshot();
+        if (snapshot != null) {
+            buffer.start(snapshot);
+            onValue.run();
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the number of weak subscriptions that were released because their
+     * subscriber was garbage collected.
+     *
+     * @return the number of reclaimed subscriptions
+     */
+    public long getReclaimedCount() {
+        return mReclaimedCount.get();
+    }
+
+    /**
+     * Returns the value that new subscribers receive first. Versioned values
+     * published later are received in order after it.
+     *
+     * @return the current value, or {@code null} when the proxy does not keep versions
+     */
+    Versioned<T> snapshot() {
+        return null;
+    }
+
+    void dispatch(final Versioned<T> value) {
+        reclaimCallbacks();
+
+        for (Callback<T> callback : mCallbacks) {
+            callback.notify(value);
+        }
     }
 
     void addCallback(final Callback<T> callback) {
@@ -76,41 +166,65 @@ public class RxPublishProxy<T> implements RxProxy<T> {
 
     void removeCallback(final Callback<T> callback) {
         mCallbacks.remove(callback);
+        if (callback instanceof WeakCallback) {
+            // An unsubscribed callback is not enqueued, so it is not counted as reclaimed
+            ((WeakCallback<T>) callback).clear();
+        }
+    }
+
+    /**
+     * Removes the callbacks of collected subscribers. Polling an empty
+     * {@link ReferenceQueue} does not lock, so this is cheap on every publish.
+     */
+    @SuppressWarnings("unchecked")
+    private void reclaimCallbacks() {
+        Reference<?> reference;
+        while ((reference = mCollectedCallbacks.poll()) != null) {
+            final WeakCallback<T> callback = (WeakCallback<T>) reference;
+            if (mCallbacks.remove(callback)) {
+                callback.release();
+                mReclaimedCount.incrementAndGet();
+            }
+        }
     }
 
     final class OnSubscribePublisher implements Observable.OnSubscribe<T> {
 
         private final Scheduler mScheduler;
 
-        private final AtomicReference<T> mCachedValue;
+        private final boolean mWeak;
 
-        OnSubscribePublisher(final Scheduler scheduler,
-                             final AtomicReference<T> cachedValue) {
+        OnSubscribePublisher(final Scheduler scheduler, final boolean weak) {
             mScheduler = checkNotNull(scheduler, "Scheduler cannot be null.");
-            mCachedValue = checkNotNull(cachedValue, "Cached Value cannot be null.");
+            mWeak = weak;
         }
 
         @Override
         public void call(final Subscriber<? super T> subscriber) {
             if (!subscriber.isUnsubscribed()) {
                 try {
-                    final ProxyProducer<T> producer = getProducer(subscriber, mCachedValue.get());
                     final Worker worker = mScheduler.createWorker();
+                    final ProxyProducer<T> producer = ProxyProducer.create(subscriber, worker);
                     subscriber.add(worker);
                     subscriber.setProducer(producer);
-                    final Callback<T> listener = new Callback<T>() {
-                        @Override
-                        public void notify(final T value) {
-                            if (!subscriber.isUnsubscribed()) {
-                                worker.schedule(new Action0() {
-                                    @Override
-                                    public void call() {
-                                        producer.offer(value);
-                                    }
-                                });
+                    final Callback<T> listener;
+                    if (mWeak) {
+                        listener = new WeakCallback<T>(producer, worker, mCollectedCallbacks);
+                    } else {
+                        listener = new Callback<T>() {
+                            @Override
+                            public void notify(final Versioned<T> value) {
+                                if (!subscriber.isUnsubscribed()) {
+                                    worker.schedule(new Action0() {
+                                        @Override
+                                        public void call() {
+                                            producer.offer(value);
+                                        }
+                                    });
+                                }
                             }
-                        }
-                    };
+                        };
+                    }
 
                     addCallback(listener);
 
@@ -120,26 +234,59 @@ public class RxPublishProxy<T> implements RxProxy<T> {
                             removeCallback(listener);
                         }
                     }));
+
+                    // The snapshot is read after the callback is registered, so every version
+                    // newer than the snapshot is notified to the callback. The producer holds
+                    // the versions notified out of order and drops the ones the snapshot covers.
+                    final Versioned<T> snapshot = snapshot();
+                    if (snapshot != null) {
+                        producer.start(snapshot);
+                    }
                 } catch (RuntimeException e) {
                     subscriber.onError(e);
                 }
             }
         }
 
-        private ProxyProducer<T> getProducer(final Subscriber<? super T> subscriber,
-                                             final T value) {
+    }
 
-            if (value != null) {
-                return new ProxyProducer<T>(subscriber, value);
-            }
-            return new ProxyProducer<T>(subscriber);
-        }
+    interface Callback<T> {
 
+        void notify(Versioned<T> value);
     }
 
-    protected interface Callback<T> {
+    /**
+     * Callback referencing the producer weakly. The producer is referenced by
+     * the subscriber, so it is collected together with the subscriber.
+     */
+    static final class WeakCallback<T> extends WeakReference<ProxyProducer<T>> implements Callback<T> {
+
+        private final Worker mWorker;
+
+        WeakCallback(final ProxyProducer<T> producer,
+                     final Worker worker,
+                     final ReferenceQueue<Object> queue) {
+            super(producer, queue);
+            mWorker = worker;
+        }
 
-        void notify(T value);
+        @Override
+        public void notify(final Versioned<T> value) {
+            final ProxyProducer<T> producer = get();
+            // The worker is unsubscribed together with the subscriber
+            if (producer != null && !mWorker.isUnsubscribed()) {
+                mWorker.schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        producer.offer(value);
+                    }
+                });
+            }
+        }
+
+        void release() {
+            mWorker.unsubscribe();
+        }
     }
 
 }
@@ -0,0 +1,279 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+import static com.upday.Preconditions.checkNotNull;
+
+/**
+ * Implementation of RxProxy that mirrors a proxy exposed by {@link RxProxyServer}.
+ *
+ * Every subscriber uses its own connection. The values requested by the subscriber
+ * are granted to the server as credit, so the server never sends more values than
+ * were requested. Published values are sent to the server over a shared connection.
+ * Connections are established on the network thread without blocking the caller.
+ */
+public final class RxRemoteProxy<T> implements RxProxy<T>, Closeable {
+
+    private final InetSocketAddress mAddress;
+
+    private final ProxyCodec<T> mCodec;
+
+    private final int mMaxValueSize;
+
+    private final NetworkLoop mLoop;
+
+    private final FrameConnection mPublishConnection;
+
+    private volatile boolean mClosed;
+
+    /**
+     * Connects to a server. A failed connection is reported by {@link #publish(Object)}
+     * and to the subscribers.
+     *
+     * @param address      the address of the server
+     * @param codec        the codec of the values
+     * @param maxValueSize maximal size of an encoded value in bytes
+     * @return the proxy connecting to the server
+     * @throws IOException if the socket cannot be opened
+     */
+    public static <T> RxRemoteProxy<T> connect(final InetSocketAddress address,
+                                               final ProxyCodec<T> codec,
+                                               final int maxValueSize) throws IOException {
+        checkNotNull(address, "Address cannot be null.");
+        checkNotNull(codec, "Codec cannot be null.");
+        RxProxyServer.checkMaxValueSize(maxValueSize);
+
+        return new RxRemoteProxy<T>(address, codec, maxValueSize);
+    }
+
+    private RxRemoteProxy(final InetSocketAddress address,
+                          final ProxyCodec<T> codec,
+                          final int maxValueSize) throws IOException {
+        mAddress = address;
+        mCodec = codec;
+        mMaxValueSize = maxValueSize;
+        mLoop = new NetworkLoop("RxRemoteProxy");
+        try {
+            mPublishConnection = new FrameConnection(mLoop, SocketChannel.open(), new FrameConnection.Listener() {
+                @Override
+                public void onFrame(final byte type, final ByteBuffer body) {
+                }
+
+                @Override
+                public void onClosed(final IOException cause) {
+                }
+            });
+        } catch (IOException e) {
+            mLoop.shutdown();
+            throw e;
+        }
+        mPublishConnection.connect(mAddress);
+    }
+
+    /**
+     * Sends the value to the server which publishes it to its proxy.
+     * Values sent shortly before the connection fails are lost.
+     *
+     * @param value non null value that will be published
+     * @throws java.nio.BufferOverflowException if the encoded value exceeds the maximal size
+     * @throws IllegalStateException if the connection to the server is closed
+     */
+    @Override
+    public void publish(final T value) {
+        checkNotNull(value, "Value cannot be null.");
+
+        final ByteBuffer frame = FrameConnection.frame(FrameConnection.PUBLISH, mMaxValueSize);
+        mCodec.encode(value, frame);
+        frame.putInt(0, frame.position() - 4);
+        frame.flip();
+        if (!mPublishConnection.send(frame)) {
+            throw new IllegalStateException("Connection to the server is closed.");
+        }
+    }
+
+    /**
+     * Returns a stream of the values published on the server.
+     * Subscribing connects to the server, a failed connection is reported as error.
+     * The stream completes when the proxy is closed.
+     *
+     * @return a non null stream of published values on the {@link Scheduler}
+     */
+    @Override
+    public Observable<T> asObservable(final Scheduler scheduler) {
+        checkNotNull(scheduler, "Scheduler cannot be null.");
+
+        return Observable.create(new OnSubscribeRemote(scheduler));
+    }
+
+    /**
+     * Closes all connections to the server and completes the subscribers.
+     */
+    @Override
+    public void close() {
+        mClosed = true;
+        mLoop.shutdown();
+    }
+
+    final class OnSubscribeRemote implements Observable.OnSubscribe<T> {
+
+        private final Scheduler mScheduler;
+
+        OnSubscribeRemote(final Scheduler scheduler) {
+            mScheduler = checkNotNull(scheduler, "Scheduler cannot be null.");
+        }
+
+        @Override
+        public void call(final Subscriber<? super T> subscriber) {
+            if (mClosed) {
+                subscriber.onError(new IllegalStateException("Proxy is closed."));
+            } else if (!subscriber.isUnsubscribed()) {
+                try {
+                    final Worker worker = mScheduler.createWorker();
+                    final ProxyProducer<T> producer = ProxyProducer.create(subscriber, worker);
+                    subscriber.add(worker);
+
+                    final FrameConnection connection = new FrameConnection(
+                            mLoop, SocketChannel.open(), new RemoteListener(subscriber, producer, worker));
+                    subscriber.add(Subscriptions.create(new Action0() {
+                        @Override
+                        public void call() {
+                            connection.closeLater();
+                        }
+                    }));
+                    connection.connect(mAddress);
+
+                    subscriber.setProducer(new Producer() {
+                        @Override
+                        public void request(final long n) {
+                            producer.request(n);
+                            if (n > 0) {
+                                connection.send(FrameConnection.creditFrame(n));
+                            }
+                        }
+                    });
+                } catch (IOException e) {
+                    subscriber.onError(e);
+                } catch (RuntimeException e) {
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Decodes the batches of a connection and hands them to the subscriber's worker.
+     */
+    final class RemoteListener implements FrameConnection.Listener {
+
+        private final Subscriber<? super T> mSubscriber;
+
+        private final ProxyProducer<T> mProducer;
+
+        private final Worker mWorker;
+
+        RemoteListener(final Subscriber<? super T> subscriber,
+                       final ProxyProducer<T> producer,
+                       final Worker worker) {
+            mSubscriber = subscriber;
+            mProducer = producer;
+            mWorker = worker;
+        }
+
+        @Override
+        public void onFrame(final byte type, final ByteBuffer body) throws IOException {
+            if (type != FrameConnection.DATA) {
+                return;
+            }
+
+            final int count = body.getInt();
+            // Every value has at least its length, so the count cannot exceed a quarter of the body
+            if (count < 0 || count > body.remaining() / 4) {
+                throw new IOException("Invalid value count " + count + ".");
+            }
+            final List<T> values = new ArrayList<T>(count);
+            final int limit = body.limit();
+            for (int i = 0; i < count; i++) {
+                final int length = body.getInt();
+                if (length < 0 || length > body.remaining()) {
+                    throw new IOException("Invalid value length " + length + ".");
+                }
+                final int end = body.position() + length;
+                body.limit(end);
+                values.add(mCodec.decode(body));
+                body.limit(limit);
+                body.position(end);
+            }
+
+            if (!mSubscriber.isUnsubscribed()) {
+                mWorker.schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        for (T value : values) {
+                            mProducer.offer(value);
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * A connection closed locally while still subscribed was closed by {@link #close()}.
+         */
+        @Override
+        public void onClosed(final IOException cause) {
+            if (!mSubscriber.isUnsubscribed()) {
+                mWorker.schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        if (cause != null) {
+                            mSubscriber.onError(cause);
+                        } else {
+                            mSubscriber.onCompleted();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+}
@@ -0,0 +1,591 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.internal.util.unsafe.UnsafeAccess;
+import rx.subscriptions.Subscriptions;
+
+import static com.upday.Preconditions.checkNotNull;
+import static rx.internal.util.unsafe.UnsafeAccess.UNSAFE;
+
+/**
+ * Implementation of RxProxy that shares values between JVMs on the same host
+ * through a memory-mapped file.
+ *
+ * The file contains a ring buffer with a single writer and many readers.
+ * Every subscriber owns a reader cursor in the file and reads only as many
+ * values as it requested. The writer does not overwrite values that a reader
+ * has not read yet, so {@link #publish(Object)} waits while the slowest reader
+ * is a whole ring behind. Readers update a heartbeat in the file whenever they
+ * poll, and the writer reclaims the cursor of a reader whose heartbeat is older
+ * than the reader timeout, so a process that died without unsubscribing does
+ * not block the writer. A reclaimed reader that is still alive fails with an
+ * {@link IllegalStateException}.
+ *
+ * Subscribers start with the values published after the subscription and poll
+ * the file for new values on their {@link Scheduler}, which therefore has to be
+ * asynchronous. A reader polls again right away while it receives values and
+ * backs off to one poll every 10 milliseconds while the file stays idle, so
+ * an idle subscriber wakes its worker up about 100 times per second.
+ */
+public final class RxSharedMemoryProxy<T> implements RxProxy<T> {
+
+    /**
+     * Maximal number of subscribers reading the file at the same time.
+     */
+    public static final int MAX_READERS = 16;
+
+    /**
+     * Default time after which the writer reclaims the cursor of a reader that stopped polling.
+     */
+    public static final long DEFAULT_READER_TIMEOUT_MILLIS = 5000;
+
+    private static final int MAGIC = 0x52785078;
+
+    private static final int CACHE_LINE = 64;
+
+    private static final int MAGIC_OFFSET = 0;
+
+    private static final int CAPACITY_OFFSET = 4;
+
+    private static final int SLOT_SIZE_OFFSET = 8;
+
+    private static final int WRITER_SEQUENCE_OFFSET = CACHE_LINE;
+
+    /**
+     * Reader cursors are stored on separate cache lines to avoid false sharing,
+     * each followed by the heartbeat of the reader.
+     */
+    private static final int READERS_OFFSET = 2 * CACHE_LINE;
+
+    private static final int HEARTBEAT_OFFSET = 8;
+
+    private static final int HEADER_SIZE = READERS_OFFSET + MAX_READERS * CACHE_LINE;
+
+    private static final int LENGTH_SIZE = 4;
+
+    private static final long FREE = -1;
+
+    private static final long MIN_POLL_INTERVAL_MICROS = 100;
+
+    private static final long MAX_POLL_INTERVAL_MICROS = 10000;
+
+    private static final long ADDRESS_OFFSET = UnsafeAccess.isUnsafeAvailable() ? addressOffset() : -1;
+
+    private final MappedByteBuffer mBuffer;
+
+    private final long mAddress;
+
+    private final int mCapacity;
+
+    private final int mSlotSize;
+
+    private final ProxyCodec<T> mCodec;
+
+    /**
+     * Buffer the values are encoded into by the writer, {@code null} for readers.
+     */
+    private final ByteBuffer mScratch;
+
+    private final long mReaderTimeoutMillis;
+
+    private long mNextSequence;
+
+    /**
+     * Lower bound of the reader cursors, so that the cursors are not read on every publish.
+     */
+    private long mMinReaderSequence;
+
+    /**
+     * Creates the file and opens it for writing. Existing content of the file is discarded.
+     *
+     * @param file         the file to share the values through
+     * @param capacity     number of values in the ring buffer, has to be a power of two
+     * @param maxValueSize maximal size of an encoded value in bytes
+     * @param codec        the codec of the values
+     * @return the proxy that writes to the file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static <T> RxSharedMemoryProxy<T> createWriter(final File file,
+                                                          final int capacity,
+                                                          final int maxValueSize,
+                                                          final ProxyCodec<T> codec)
+            throws IOException {
+        return createWriter(file, capacity, maxValueSize, codec,
+                            DEFAULT_READER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates the file and opens it for writing. Existing content of the file is discarded.
+     *
+     * @param file          the file to share the values through
+     * @param capacity      number of values in the ring buffer, has to be a power of two
+     * @param maxValueSize  maximal size of an encoded value in bytes
+     * @param codec         the codec of the values
+     * @param readerTimeout time after which a reader that stopped polling is reclaimed
+     * @param unit          the unit of the reader timeout
+     * @return the proxy that writes to the file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static <T> RxSharedMemoryProxy<T> createWriter(final File file,
+                                                          final int capacity,
+                                                          final int maxValueSize,
+                                                          final ProxyCodec<T> codec,
+                                                          final long readerTimeout,
+                                                          final TimeUnit unit)
+            throws IOException {
+        checkNotNull(file, "File cannot be null.");
+        checkNotNull(codec, "Codec cannot be null.");
+        checkNotNull(unit, "Unit cannot be null.");
+        checkUnsafeAvailable();
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity has to be a positive power of two.");
+        }
+        if (maxValueSize <= 0) {
+            throw new IllegalArgumentException("Maximal value size has to be positive.");
+        }
+        if (unit.toMillis(readerTimeout) <= TimeUnit.MICROSECONDS.toMillis(MAX_POLL_INTERVAL_MICROS)) {
+            throw new IllegalArgumentException("Reader timeout has to be longer than the poll interval.");
+        }
+
+        final int slotSize = (LENGTH_SIZE + maxValueSize + 7) & ~7;
+        final MappedByteBuffer buffer = map(file, HEADER_SIZE + (long) capacity * slotSize, true);
+        final long address = address(buffer);
+
+        UNSAFE.putIntVolatile(null, address + MAGIC_OFFSET, 0);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(SLOT_SIZE_OFFSET, slotSize);
+        buffer.putLong(WRITER_SEQUENCE_OFFSET, 0);
+        for (int i = 0; i < MAX_READERS; i++) {
+            buffer.putLong(READERS_OFFSET + i * CACHE_LINE, FREE);
+        }
+        UNSAFE.putIntVolatile(null, address + MAGIC_OFFSET, MAGIC);
+
+        return new RxSharedMemoryProxy<T>(buffer, capacity, slotSize, codec,
+                                          ByteBuffer.allocate(maxValueSize),
+                                          unit.toMillis(readerTimeout));
+    }
+
+    /**
+     * Opens a file created by {@link #createWriter(File, int, int, ProxyCodec)} for reading.
+     *
+     * @param file  the file to read the values from
+     * @param codec the codec of the values
+     * @return the proxy that reads from the file
+     * @throws IOException if the file cannot be mapped or was not created by a writer
+     */
+    public static <T> RxSharedMemoryProxy<T> openReader(final File file,
+                                                        final ProxyCodec<T> codec)
+            throws IOException {
+        checkNotNull(file, "File cannot be null.");
+        checkNotNull(codec, "Codec cannot be null.");
+        checkUnsafeAvailable();
+
+        final MappedByteBuffer buffer = map(file, file.length(), false);
+        if (buffer.capacity() < HEADER_SIZE
+            || UNSAFE.getIntVolatile(null, address(buffer) + MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("File was not created by a shared memory proxy writer.");
+        }
+
+        return new RxSharedMemoryProxy<T>(buffer,
+                                          buffer.getInt(CAPACITY_OFFSET),
+                                          buffer.getInt(SLOT_SIZE_OFFSET),
+                                          codec,
+                                          null,
+                                          0);
+    }
+
+    private RxSharedMemoryProxy(final MappedByteBuffer buffer,
+                                final int capacity,
+                                final int slotSize,
+                                final ProxyCodec<T> codec,
+                                final ByteBuffer scratch,
+                                final long readerTimeoutMillis) {
+        mBuffer = buffer;
+        mAddress = address(buffer);
+        mCapacity = capacity;
+        mSlotSize = slotSize;
+        mCodec = codec;
+        mScratch = scratch;
+        mReaderTimeoutMillis = readerTimeoutMillis;
+    }
+
+    /**
+     * Writes the value to the file. Waits while the slowest reader is a whole ring behind,
+     * at most until the reader timeout elapses since its last poll.
+     *
+     * @param value non null value that will be published
+     * @throws UnsupportedOperationException if the proxy was opened for reading
+     * @throws java.nio.BufferOverflowException if the encoded value exceeds the maximal size
+     */
+    @Override
+    public synchronized void publish(final T value) {
+        checkNotNull(value, "Value cannot be null.");
+        if (mScratch == null) {
+            throw new UnsupportedOperationException("Proxy was opened for reading.");
+        }
+
+        mScratch.clear();
+        mCodec.encode(value, mScratch);
+        mScratch.flip();
+
+        final long sequence = mNextSequence;
+        awaitCapacity(sequence);
+
+        final int offset = slotOffset(sequence);
+        mBuffer.putInt(offset, mScratch.remaining());
+        mBuffer.position(offset + LENGTH_SIZE);
+        mBuffer.put(mScratch);
+
+        mNextSequence = sequence + 1;
+        UNSAFE.putOrderedLong(null, mAddress + WRITER_SEQUENCE_OFFSET, mNextSequence);
+    }
+
+    @Override
+    public Observable<T> asObservable(final Scheduler scheduler) {
+        checkNotNull(scheduler, "Scheduler cannot be null.");
+
+        return Observable.create(new OnSubscribeReader(scheduler));
+    }
+
+    private void awaitCapacity(final long sequence) {
+        final long wrapPoint = sequence - mCapacity;
+        if (mMinReaderSequence > wrapPoint) {
+            return;
+        }
+
+        long minSequence;
+        int idleCount = 0;
+        while ((minSequence = minReaderSequence(sequence)) <= wrapPoint) {
+            if (idle(idleCount++)) {
+                reclaimStaleReaders(wrapPoint);
+            }
+        }
+        mMinReaderSequence = minSequence;
+    }
+
+    private long minReaderSequence(final long sequence) {
+        long minSequence = sequence;
+        for (int i = 0; i < MAX_READERS; i++) {
+            final long cursor = UNSAFE.getLongVolatile(null, readerAddress(i));
+            if (cursor != FREE && cursor < minSequence) {
+                minSequence = cursor;
+            }
+        }
+        return minSequence;
+    }
+
+    /**
+     * Frees the cursors that block the writer and whose reader did not poll within the timeout.
+     */
+    private void reclaimStaleReaders(final long wrapPoint) {
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < MAX_READERS; i++) {
+            final long address = readerAddress(i);
+            final long cursor = UNSAFE.getLongVolatile(null, address);
+            if (cursor != FREE
+                && cursor <= wrapPoint
+                && now - UNSAFE.getLongVolatile(null, address + HEARTBEAT_OFFSET) > mReaderTimeoutMillis) {
+                UNSAFE.compareAndSwapLong(null, address, cursor, FREE);
+            }
+        }
+    }
+
+    private long writerSequence() {
+        return UNSAFE.getLongVolatile(null, mAddress + WRITER_SEQUENCE_OFFSET);
+    }
+
+    private long readerAddress(final int reader) {
+        return mAddress + READERS_OFFSET + reader * CACHE_LINE;
+    }
+
+    private int slotOffset(final long sequence) {
+        return HEADER_SIZE + (int) (sequence & (mCapacity - 1)) * mSlotSize;
+    }
+
+    /**
+     * Spins, yields and then parks the writer.
+     *
+     * @return {@code true} when the writer parked
+     */
+    private static boolean idle(final int idleCount) {
+        if (idleCount < 100) {
+            return false;
+        }
+        if (idleCount < 200) {
+            Thread.yield();
+            return false;
+        }
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(MIN_POLL_INTERVAL_MICROS));
+        return true;
+    }
+
+    private static MappedByteBuffer map(final File file, final long size, final boolean create)
+            throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            if (create) {
+                randomAccessFile.setLength(0);
+                randomAccessFile.setLength(size);
+            }
+            // The mapping stays valid after the file is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void checkUnsafeAvailable() {
+        if (ADDRESS_OFFSET < 0) {
+            throw new UnsupportedOperationException("Shared memory requires sun.misc.Unsafe.");
+        }
+    }
+
+    private static long address(final Buffer buffer) {
+        return UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+    }
+
+    private static long addressOffset() {
+        try {
+            return UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (NoSuchFieldException e) {
+            return -1;
+        }
+    }
+
+    final class OnSubscribeReader implements Observable.OnSubscribe<T> {
+
+        private final Scheduler mScheduler;
+
+        OnSubscribeReader(final Scheduler scheduler) {
+            mScheduler = checkNotNull(scheduler, "Scheduler cannot be null.");
+        }
+
+        @Override
+        public void call(final Subscriber<? super T> subscriber) {
+            if (!subscriber.isUnsubscribed()) {
+                try {
+                    final Worker worker = mScheduler.createWorker();
+                    final ProxyProducer<T> producer = ProxyProducer.create(subscriber, worker);
+                    subscriber.add(worker);
+                    // The worker is unsubscribed before the cursor is released
+                    final Reader reader = new Reader(subscriber, producer, worker, claimReader());
+                    subscriber.add(Subscriptions.create(new Action0() {
+                        @Override
+                        public void call() {
+                            reader.release();
+                        }
+                    }));
+                    subscriber.setProducer(producer);
+                    worker.schedule(reader);
+                } catch (RuntimeException e) {
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        private long claimReader() {
+            for (int i = 0; i < MAX_READERS; i++) {
+                final long address = readerAddress(i);
+                if (UNSAFE.getLongVolatile(null, address) == FREE) {
+                    // The heartbeat is fresh before the cursor is claimed, so the writer
+                    // does not reclaim the cursor for the heartbeat of a previous reader
+                    UNSAFE.putLongVolatile(null, address + HEARTBEAT_OFFSET, System.currentTimeMillis());
+                    if (UNSAFE.compareAndSwapLong(null, address, FREE, writerSequence())) {
+                        return address;
+                    }
+                }
+            }
+            throw new IllegalStateException("All " + MAX_READERS + " readers are in use.");
+        }
+
+    }
+
+    /**
+     * Reads the values requested by a subscriber and advances its cursor in the file.
+     * The reader schedules itself again, with a growing delay while there is nothing to read.
+     *
+     * The reader owns its slot while the slot holds the cursor of the reader. The heartbeat
+     * is refreshed after every value, and the value is emitted only if the slot is still
+     * owned afterwards, so a value overwritten after a reclaim is never emitted.
+     */
+    final class Reader implements Action0 {
+
+        private final Subscriber<? super T> mSubscriber;
+
+        private final ProxyProducer<T> mProducer;
+
+        private final Worker mWorker;
+
+        private final long mCursorAddress;
+
+        private final ByteBuffer mView = mBuffer.duplicate();
+
+        /**
+         * Cursor of the reader, the slot is owned as long as it holds this value.
+         */
+        private volatile long mCursor;
+
+        /**
+         * Guarded by the reader, so that the slot is not advanced after it was released.
+         */
+        private boolean mReleased;
+
+        private long mPollInterval;
+
+        Reader(final Subscriber<? super T> subscriber,
+               final ProxyProducer<T> producer,
+               final Worker worker,
+               final long cursorAddress) {
+            mSubscriber = subscriber;
+            mProducer = producer;
+            mWorker = worker;
+            mCursorAddress = cursorAddress;
+            mCursor = UNSAFE.getLongVolatile(null, cursorAddress);
+
+            // The writer might have passed the claimed cursor before it noticed the claim,
+            // so reading starts at the current writer sequence.
+            advanceCursor(writerSequence());
+        }
+
+        @Override
+        public void call() {
+            if (mSubscriber.isUnsubscribed()) {
+                return;
+            }
+            if (!isOwned()) {
+                onReclaimed();
+                return;
+            }
+
+            final long available = writerSequence();
+            long cursor = mCursor;
+
+            // ProxyProducer holds the requested amount, values are read only on demand
+            while (cursor < available && mProducer.get() > 0 && !mSubscriber.isUnsubscribed()) {
+                final T value;
+                try {
+                    value = read(cursor);
+                } catch (RuntimeException e) {
+                    // A value overwritten while it was read can fail to decode
+                    if (isOwned()) {
+                        mSubscriber.onError(e);
+                    } else {
+                        onReclaimed();
+                    }
+                    return;
+                }
+                if (!isOwned()) {
+                    onReclaimed();
+                    return;
+                }
+
+                ++cursor;
+                mProducer.offer(value);
+            }
+
+            final boolean read = cursor != mCursor;
+            advanceCursor(cursor);
+            schedule(read);
+        }
+
+        private T read(final long sequence) {
+            final int offset = slotOffset(sequence);
+            final int length = mView.getInt(offset);
+            mView.limit(offset + LENGTH_SIZE + length);
+            mView.position(offset + LENGTH_SIZE);
+            try {
+                return mCodec.decode(mView);
+            } finally {
+                mView.clear();
+            }
+        }
+
+        /**
+         * Refreshes the heartbeat and checks that the slot is still owned. The volatile
+         * heartbeat write keeps the preceding reads of a value before the ownership check,
+         * so the writer reclaims the slot only after the value was read.
+         */
+        private boolean isOwned() {
+            UNSAFE.putLongVolatile(null, mCursorAddress + HEARTBEAT_OFFSET, System.currentTimeMillis());
+            return UNSAFE.getLongVolatile(null, mCursorAddress) == mCursor;
+        }
+
+        private void onReclaimed() {
+            mSubscriber.onError(new IllegalStateException(
+                    "Reader was reclaimed by the writer after it stopped polling."));
+        }
+
+        private void schedule(final boolean read) {
+            if (read) {
+                mPollInterval = 0;
+                mWorker.schedule(this);
+            } else {
+                mPollInterval = Math.min(Math.max(2 * mPollInterval, MIN_POLL_INTERVAL_MICROS),
+                                         MAX_POLL_INTERVAL_MICROS);
+                mWorker.schedule(this, mPollInterval, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        /**
+         * Moves the cursor unless the reader was released or reclaimed in the meantime.
+         */
+        private synchronized void advanceCursor(final long cursor) {
+            if (!mReleased
+                && cursor > mCursor
+                && UNSAFE.compareAndSwapLong(null, mCursorAddress, mCursor, cursor)) {
+                mCursor = cursor;
+            }
+        }
+
+        /**
+         * Frees the slot if it is still owned. A reclaimed slot might already be
+         * owned by another reader, so it is left untouched.
+         */
+        synchronized void release() {
+            if (!mReleased) {
+                mReleased = true;
+                UNSAFE.compareAndSwapLong(null, mCursorAddress, mCursor, FREE);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+/**
+ * Value published to a proxy together with its version.
+ *
+ * Versions of a proxy increase with every publication, which allows subscribers
+ * to receive them in order, without gaps and without duplicates.
+ */
+final class Versioned<T> {
+
+    /**
+     * Version of values that are published by proxies which do not keep versions.
+     * It lies below every version a proxy that keeps versions can reach, including
+     * the version of its empty snapshot.
+     */
+    static final long UNVERSIONED = Long.MIN_VALUE;
+
+    /**
+     * Version of the first value of a proxy that keeps versions. The snapshot of
+     * such a proxy without a value has the version before it.
+     */
+    static final long FIRST_VERSION = 1;
+
+    private final long mVersion;
+
+    private final T mValue;
+
+    Versioned(final long version, final T value) {
+        mVersion = version;
+        mValue = value;
+    }
+
+    static <T> Versioned<T> unversioned(final T value) {
+        return new Versioned<T>(UNVERSIONED, value);
+    }
+
+    /**
+     * Returns the snapshot of a proxy that keeps versions but has no value yet.
+     */
+    static <T> Versioned<T> empty() {
+        return new Versioned<T>(FIRST_VERSION - 1, null);
+    }
+
+    /**
+     * Returns the value that follows this one.
+     *
+     * @param value the next value
+     * @return the next value with a version one higher than this one
+     */
+    Versioned<T> next(final T value) {
+        return new Versioned<T>(mVersion + 1, value);
+    }
+
+    long getVersion() {
+        return mVersion;
+    }
+
+    T getValue() {
+        return mValue;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Scheduler.Worker;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.observers.TestSubscriber;
+
+import static java.lang.Thread.currentThread;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventLoopSchedulerTest {
+
+    private EventLoopScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = EventLoopScheduler.create(2);
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdown();
+    }
+
+    @Test
+    public void worker_RunsAllActionsOnSameThread() throws InterruptedException {
+        final AtomicReference<Thread> first = new AtomicReference<Thread>();
+        final AtomicReference<Thread> second = new AtomicReference<Thread>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        Worker worker = mScheduler.createWorker();
+
+        worker.schedule(recordThread(first, latch));
+        worker.schedule(recordThread(second, latch));
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(first.get()).isSameAs(second.get());
+        assertThat(first.get()).isNotEqualTo(currentThread());
+    }
+
+    @Test
+    public void workers_AreAssignedToLoopsRoundRobin() throws InterruptedException {
+        final AtomicReference<Thread> first = new AtomicReference<Thread>();
+        final AtomicReference<Thread> second = new AtomicReference<Thread>();
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        mScheduler.createWorker().schedule(recordThread(first, latch));
+        mScheduler.createWorker().schedule(recordThread(second, latch));
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(first.get()).isNotSameAs(second.get());
+    }
+
+    @Test
+    public void worker_RunsDelayedAction() throws InterruptedException {
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        mScheduler.createWorker().schedule(recordThread(thread, latch), 10, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void worker_DoesNotRunActions_WhenUnsubscribed() throws InterruptedException {
+        final AtomicBoolean called = new AtomicBoolean();
+        Worker worker = mScheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                called.set(true);
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+
+        worker.unsubscribe();
+        Thread.sleep(100);
+
+        assertThat(called.get()).isFalse();
+    }
+
+    @Test
+    public void proxy_NotifiesAllValuesOnSingleLoopThread() {
+        final AtomicReference<Thread> onNextThread = new AtomicReference<Thread>();
+        final AtomicBoolean changedThread = new AtomicBoolean();
+        RxPublishProxy<Integer> proxy = RxPublishProxy.create();
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        proxy.asObservable(mScheduler)
+             .doOnNext(new Action1<Integer>() {
+                 @Override
+                 public void call(Integer __) {
+                     if (!onNextThread.compareAndSet(null, currentThread())
+                         && onNextThread.get() != currentThread()) {
+                         changedThread.set(true);
+                     }
+                 }
+             })
+             .take(3)
+             .subscribe(ts);
+
+        proxy.publish(1);
+        proxy.publish(2);
+        proxy.publish(3);
+
+        ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        ts.assertValues(1, 2, 3);
+        assertThat(changedThread.get()).isFalse();
+    }
+
+    @Test
+    public void worker_RemovesCancelledDelayedActions() throws InterruptedException {
+        final EventLoopScheduler.EventLoopWorker worker =
+                (EventLoopScheduler.EventLoopWorker) mScheduler.createWorker();
+        final AtomicInteger delayedTaskCount = new AtomicInteger(-1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < 1000; i++) {
+            worker.schedule(new Action0() {
+                @Override
+                public void call() {
+                }
+            }, 1, TimeUnit.HOURS).unsubscribe();
+        }
+
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                delayedTaskCount.set(worker.delayedTaskCount());
+                latch.countDown();
+            }
+        });
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(delayedTaskCount.get()).isLessThan(64);
+    }
+
+    @Test
+    public void proxy_EmitsOnLoopThread_WhenRequestedFromOtherThread() throws InterruptedException {
+        final List<Thread> onNextThreads = new CopyOnWriteArrayList<Thread>();
+        RxPublishProxy<Integer> proxy = RxPublishProxy.create();
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>(0);
+        proxy.asObservable(mScheduler)
+             .doOnNext(recordThreads(onNextThreads))
+             .subscribe(ts);
+        proxy.publish(1);
+        proxy.publish(2);
+        // The values are queued on the loop while nothing is requested
+        Thread.sleep(50);
+
+        ts.requestMore(1);
+        ts.requestMore(1);
+
+        for (int i = 0; i < 100 && ts.getOnNextEvents().size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        ts.assertValues(1, 2);
+        assertThat(onNextThreads).doesNotContain(currentThread());
+    }
+
+    @Test
+    public void producer_DrainsInline_WhenRequestedOnLoopThread() throws InterruptedException {
+        final EventLoopScheduler.EventLoopWorker worker =
+                (EventLoopScheduler.EventLoopWorker) mScheduler.createWorker();
+        final TestSubscriber<Integer> ts = new TestSubscriber<Integer>(0);
+        final ProxyProducer<Integer> producer = ProxyProducer.create(ts, worker);
+        final AtomicInteger emittedInline = new AtomicInteger(-1);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                producer.offer(1);
+                producer.request(1);
+                emittedInline.set(ts.getOnNextEvents().size());
+                latch.countDown();
+            }
+        });
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(emittedInline.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void worker_IsLoopThread_OnlyOnItsLoop() throws InterruptedException {
+        final EventLoopScheduler.EventLoopWorker worker =
+                (EventLoopScheduler.EventLoopWorker) mScheduler.createWorker();
+        final AtomicBoolean isLoopThread = new AtomicBoolean();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                isLoopThread.set(worker.isLoopThread());
+                latch.countDown();
+            }
+        });
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(isLoopThread.get()).isTrue();
+        assertThat(worker.isLoopThread()).isFalse();
+    }
+
+    @Test
+    public void cacheProxy_EmitsCachedValueOnLoopThread() throws InterruptedException {
+        final List<Thread> onNextThreads = new CopyOnWriteArrayList<Thread>();
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        RxCacheProxy.create(1)
+                    .asObservable(mScheduler)
+                    .doOnNext(recordThreads(onNextThreads))
+                    .first()
+                    .subscribe(ts);
+
+        ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        ts.assertValue(1);
+        assertThat(onNextThreads).doesNotContain(currentThread());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_ThrowsWhenLoopCountIsNotPositive() {
+        EventLoopScheduler.create(0);
+    }
+
+    private static Action1<Integer> recordThreads(final List<Thread> threads) {
+        return new Action1<Integer>() {
+            @Override
+            public void call(Integer __) {
+                threads.add(currentThread());
+            }
+        };
+    }
+
+    private static Action0 recordThread(final AtomicReference<Thread> thread,
+                                        final CountDownLatch latch) {
+        return new Action0() {
+            @Override
+            public void call() {
+                thread.set(currentThread());
+                latch.countDown();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProxyProducerTest {
+
+    private TestSubscriber<Integer> mSubscriber;
+
+    private ProxyProducer<Integer> mProducer;
+
+    @Before
+    public void setUp() {
+        mSubscriber = new TestSubscriber<Integer>();
+        mProducer = new ProxyProducer<Integer>(mSubscriber);
+        mProducer.request(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void offer_EmitsUnversionedValuesEveryTime() {
+        mProducer.offer(1);
+        mProducer.offer(1);
+
+        mSubscriber.assertValues(1, 1);
+    }
+
+    @Test
+    public void offer_DropsVersionThatWasAlreadyEmitted() {
+        Versioned<Integer> value = new Versioned<Integer>(1, 1);
+        mProducer.start(Versioned.<Integer>empty());
+
+        mProducer.offer(value);
+        mProducer.offer(value);
+
+        mSubscriber.assertValue(1);
+    }
+
+    @Test
+    public void offer_HoldsVersion_UntilMissingVersionArrives() {
+        mProducer.start(Versioned.<Integer>empty());
+
+        mProducer.offer(new Versioned<Integer>(2, 2));
+        mSubscriber.assertNoValues();
+        mProducer.offer(new Versioned<Integer>(1, 1));
+
+        mSubscriber.assertValues(1, 2);
+    }
+
+    @Test
+    public void offer_HoldsVersions_UntilStarted() {
+        mProducer.offer(new Versioned<Integer>(2, 2));
+        mSubscriber.assertNoValues();
+        mProducer.start(new Versioned<Integer>(1, 1));
+
+        mSubscriber.assertValues(1, 2);
+    }
+
+    @Test
+    public void offer_DropsVersionOlderThanSnapshot() {
+        mProducer.offer(new Versioned<Integer>(1, 1));
+        mProducer.start(new Versioned<Integer>(2, 2));
+        mProducer.offer(new Versioned<Integer>(3, 3));
+
+        mSubscriber.assertValues(2, 3);
+    }
+
+    @Test
+    public void emptySnapshot_HasVersionOtherThanUnversioned() {
+        assertThat(Versioned.<Integer>empty().getVersion()).isNotEqualTo(Versioned.UNVERSIONED);
+    }
+
+    @Test
+    public void start_EmitsNothing_WhenSnapshotHasNoValue() {
+        mProducer.start(Versioned.<Integer>empty());
+
+        mSubscriber.assertNoValues();
+    }
+
+}
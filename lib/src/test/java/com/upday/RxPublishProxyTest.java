@@ -124,6 +124,19 @@ public class RxPublishProxyTest {
         ts.assertValueCount(1);
     }
 
+    @Test
+    public void publishRespectsBackPressure_AndEmitsJustOneRequestedItem_WhenMoreAreQueued() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>(0);
+        mProxy.asObservable(immediate()).subscribe(ts);
+        mProxy.publish(1);
+        mProxy.publish(2);
+        mProxy.publish(3);
+
+        ts.requestMore(1);
+
+        ts.assertValue(1);
+    }
+
     @Test
     public void publishRespectsBackPressure_DoesNotEmmitValues_WhenNotRequested() {
         TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
@@ -162,4 +175,40 @@ public class RxPublishProxyTest {
         ts.assertValueCount(0);
     }
 
+    @Test
+    public void weakSubscriber_ReceivesValues_WhileReferenced() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mProxy.asWeakObservable(immediate()).subscribe(ts);
+
+        System.gc();
+        mProxy.publish(1);
+
+        ts.assertValue(1);
+        assertThat(mProxy.getReclaimedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void weakSubscriber_IsReclaimed_WhenCollected() throws InterruptedException {
+        mProxy.asWeakObservable(immediate()).subscribe(new TestSubscriber<Integer>());
+
+        for (int i = 0; i < 50 && mProxy.getReclaimedCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            mProxy.publish(i);
+        }
+
+        assertThat(mProxy.getReclaimedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void weakSubscriber_IsNotReclaimed_WhenUnsubscribed() throws InterruptedException {
+        mProxy.asWeakObservable(immediate()).subscribe(new TestSubscriber<Integer>()).unsubscribe();
+
+        System.gc();
+        Thread.sleep(10);
+        mProxy.publish(1);
+
+        assertThat(mProxy.getReclaimedCount()).isEqualTo(0);
+    }
+
 }
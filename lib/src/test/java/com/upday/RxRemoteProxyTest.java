@@ -0,0 +1,328 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.observers.TestSubscriber;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static rx.schedulers.Schedulers.computation;
+import static rx.schedulers.Schedulers.immediate;
+import static rx.schedulers.Schedulers.io;
+
+public class RxRemoteProxyTest {
+
+    private RxCacheProxy<Integer> mProxy;
+
+    private RxProxyServer<Integer> mServer;
+
+    private RxRemoteProxy<Integer> mRemoteProxy;
+
+    @Before
+    public void setUp() throws IOException {
+        mProxy = RxCacheProxy.create(0);
+        mServer = RxProxyServer.start(mProxy,
+                                      new InetSocketAddress("127.0.0.1", 0),
+                                      new IntegerCodec(),
+                                      4,
+                                      computation());
+        mRemoteProxy = RxRemoteProxy.connect(mServer.getLocalAddress(), new IntegerCodec(), 4);
+    }
+
+    @After
+    public void tearDown() {
+        mRemoteProxy.close();
+        mServer.close();
+    }
+
+    @Test
+    public void remoteProxy_ReceivesCachedValue() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mRemoteProxy.asObservable(computation())
+                    .first()
+                    .subscribe(ts);
+
+        ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        ts.assertValue(0);
+    }
+
+    @Test
+    public void remoteProxy_ReceivesAllPublishedValuesInOrder() throws InterruptedException {
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mRemoteProxy.asObservable(computation())
+                    .doOnNext(new Action1<Integer>() {
+                        @Override
+                        public void call(Integer __) {
+                            subscribed.countDown();
+                        }
+                    })
+                    .take(100)
+                    .subscribe(ts);
+        // The cached value is received once the server subscribed to the proxy
+        subscribed.await(1, TimeUnit.SECONDS);
+        Integer[] expected = new Integer[100];
+        expected[0] = 0;
+
+        for (int i = 1; i < 100; i++) {
+            mProxy.publish(i);
+            expected[i] = i;
+        }
+
+        ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        ts.assertValues(expected);
+    }
+
+    @Test
+    public void remoteProxyRespectsBackPressure_DoesNotEmitValues_WhenNotRequested()
+            throws InterruptedException {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>(0);
+        mRemoteProxy.asObservable(immediate()).subscribe(ts);
+
+        Thread.sleep(100);
+
+        ts.assertNoValues();
+    }
+
+    @Test
+    public void remoteProxyRespectsBackPressure_EmitsRequestedValues() throws InterruptedException {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>(0);
+        mRemoteProxy.asObservable(immediate()).subscribe(ts);
+
+        ts.requestMore(1);
+        Thread.sleep(100);
+
+        ts.assertValue(0);
+    }
+
+    @Test
+    public void publish_PublishesOnServerProxy() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mProxy.asObservable(computation())
+              .skip(1)
+              .first()
+              .subscribe(ts);
+
+        mRemoteProxy.publish(5);
+
+        ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        ts.assertValue(5);
+    }
+
+    @Test
+    public void subscriber_ReceivesError_WhenServerCloses() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mRemoteProxy.asObservable(computation()).subscribe(ts);
+
+        mServer.close();
+
+        ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        ts.assertError(IOException.class);
+    }
+
+    @Test
+    public void server_DoesNotSubscribe_ForConnectionThatOnlyPublishes()
+            throws IOException, InterruptedException {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        RxProxy<Integer> countingProxy = new RxProxy<Integer>() {
+            @Override
+            public void publish(final Integer value) {
+                mProxy.publish(value);
+            }
+
+            @Override
+            public Observable<Integer> asObservable(final Scheduler scheduler) {
+                return mProxy.asObservable(scheduler).doOnSubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        subscriptions.incrementAndGet();
+                    }
+                });
+            }
+        };
+        RxProxyServer<Integer> server = RxProxyServer.start(countingProxy,
+                                                            new InetSocketAddress("127.0.0.1", 0),
+                                                            new IntegerCodec(),
+                                                            4,
+                                                            computation());
+        RxRemoteProxy<Integer> remoteProxy = RxRemoteProxy.connect(server.getLocalAddress(), new IntegerCodec(), 4);
+        try {
+            remoteProxy.publish(5);
+            for (int i = 0; i < 100 && mProxy.getValue() != 5; i++) {
+                Thread.sleep(10);
+            }
+
+            assertThat(mProxy.getValue()).isEqualTo(5);
+            assertThat(subscriptions.get()).isEqualTo(0);
+        } finally {
+            remoteProxy.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void server_ServesOtherConnections_WhilePublishBlocks()
+            throws IOException, InterruptedException {
+        final CountDownLatch publishing = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        RxProxy<Integer> blockingProxy = new RxProxy<Integer>() {
+            @Override
+            public void publish(final Integer value) {
+                publishing.countDown();
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                mProxy.publish(value);
+            }
+
+            @Override
+            public Observable<Integer> asObservable(final Scheduler scheduler) {
+                return mProxy.asObservable(scheduler);
+            }
+        };
+        RxProxyServer<Integer> server = RxProxyServer.start(blockingProxy,
+                                                            new InetSocketAddress("127.0.0.1", 0),
+                                                            new IntegerCodec(),
+                                                            4,
+                                                            io());
+        RxRemoteProxy<Integer> publisher = RxRemoteProxy.connect(server.getLocalAddress(), new IntegerCodec(), 4);
+        RxRemoteProxy<Integer> subscriber = RxRemoteProxy.connect(server.getLocalAddress(), new IntegerCodec(), 4);
+        try {
+            publisher.publish(5);
+            assertThat(publishing.await(1, TimeUnit.SECONDS)).isTrue();
+
+            TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+            subscriber.asObservable(io()).first().subscribe(ts);
+
+            ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+            ts.assertValue(0);
+        } finally {
+            unblock.countDown();
+            publisher.close();
+            subscriber.close();
+            server.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void publish_Throws_WhenConnectionToServerIsClosed() throws InterruptedException {
+        mServer.close();
+
+        for (int i = 0; i < 100; i++) {
+            mRemoteProxy.publish(i);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void subscriber_Completes_WhenProxyIsClosed() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mRemoteProxy.asObservable(computation()).subscribe(ts);
+
+        mRemoteProxy.close();
+
+        ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        ts.assertCompleted();
+    }
+
+    @Test
+    public void subscriber_ReceivesError_WhenServerIsUnreachable() throws IOException {
+        InetSocketAddress address = mServer.getLocalAddress();
+        mServer.close();
+        RxRemoteProxy<Integer> remoteProxy = RxRemoteProxy.connect(address, new IntegerCodec(), 4);
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+
+        try {
+            remoteProxy.asObservable(computation()).subscribe(ts);
+
+            ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+            ts.assertError(IOException.class);
+        } finally {
+            remoteProxy.close();
+        }
+    }
+
+    @Test
+    public void subscriber_ReceivesError_WhenBatchHasInvalidValueCount() throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0, 2, InetAddress.getByName("127.0.0.1"));
+        RxRemoteProxy<Integer> remoteProxy = RxRemoteProxy.connect(
+                (InetSocketAddress) serverSocket.getLocalSocketAddress(), new IntegerCodec(), 4);
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+
+        try {
+            remoteProxy.asObservable(computation()).subscribe(ts);
+            // Both the publish connection and the connection of the subscriber receive the batch
+            for (int i = 0; i < 2; i++) {
+                Socket socket = serverSocket.accept();
+                DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+                output.writeInt(1 + 4);
+                output.writeByte(FrameConnection.DATA);
+                output.writeInt(Integer.MAX_VALUE);
+                output.flush();
+            }
+
+            ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+            ts.assertError(IOException.class);
+        } finally {
+            remoteProxy.close();
+            serverSocket.close();
+        }
+    }
+
+    private static final class IntegerCodec implements ProxyCodec<Integer> {
+
+        @Override
+        public void encode(final Integer value, final ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer decode(final ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    }
+
+}
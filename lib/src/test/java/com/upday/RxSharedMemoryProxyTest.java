@@ -0,0 +1,222 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static rx.schedulers.Schedulers.computation;
+
+public class RxSharedMemoryProxyTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    private RxSharedMemoryProxy<Integer> mWriter;
+
+    private RxSharedMemoryProxy<Integer> mReader;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = mFolder.newFile();
+        mWriter = RxSharedMemoryProxy.createWriter(mFile, 4, 4, new IntegerCodec());
+        mReader = RxSharedMemoryProxy.openReader(mFile, new IntegerCodec());
+    }
+
+    @Test
+    public void publish_NotifiesReader() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mReader.asObservable(computation())
+               .take(3)
+               .subscribe(ts);
+
+        mWriter.publish(1);
+        mWriter.publish(2);
+        mWriter.publish(3);
+
+        ts.awaitTerminalEvent(100, TimeUnit.MILLISECONDS);
+        ts.assertValues(1, 2, 3);
+    }
+
+    @Test
+    public void publish_WrapsAroundRing_WhenReaderKeepsUp() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mReader.asObservable(computation())
+               .take(10)
+               .subscribe(ts);
+
+        for (int i = 0; i < 10; i++) {
+            mWriter.publish(i);
+        }
+
+        ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        ts.assertValues(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    }
+
+    @Test
+    public void reader_DoesNotReceiveValuesPublishedBeforeSubscription() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mWriter.publish(1);
+
+        mReader.asObservable(computation())
+               .first()
+               .subscribe(ts);
+        mWriter.publish(2);
+
+        ts.awaitTerminalEvent(100, TimeUnit.MILLISECONDS);
+        ts.assertValue(2);
+    }
+
+    @Test
+    public void readerRespectsBackPressure_AndEmitsJustOneRequestedItem() throws InterruptedException {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>(1);
+        mReader.asObservable(computation()).subscribe(ts);
+
+        mWriter.publish(1);
+        mWriter.publish(2);
+        Thread.sleep(100);
+
+        ts.assertValue(1);
+    }
+
+    @Test(timeout = 5000)
+    public void publish_ReclaimsReader_ThatStoppedPolling() throws IOException {
+        RxSharedMemoryProxy<Integer> writer = RxSharedMemoryProxy.createWriter(
+                mFile, 4, 4, new IntegerCodec(), 100, TimeUnit.MILLISECONDS);
+        RxSharedMemoryProxy<Integer> reader = RxSharedMemoryProxy.openReader(mFile, new IntegerCodec());
+        // The actions of a test scheduler run only when triggered, like a reader of a crashed process
+        TestScheduler scheduler = new TestScheduler();
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        reader.asObservable(scheduler).subscribe(ts);
+
+        for (int i = 0; i < 10; i++) {
+            writer.publish(i);
+        }
+        scheduler.triggerActions();
+
+        ts.assertNoValues();
+        ts.assertError(IllegalStateException.class);
+    }
+
+    @Test(timeout = 5000)
+    public void reclaimedReader_DoesNotReleaseCursorOfNextReader() throws IOException {
+        RxSharedMemoryProxy<Integer> writer = RxSharedMemoryProxy.createWriter(
+                mFile, 4, 4, new IntegerCodec(), 100, TimeUnit.MILLISECONDS);
+        TestScheduler stalledScheduler = new TestScheduler();
+        TestSubscriber<Integer> stalled = new TestSubscriber<Integer>();
+        mReader.asObservable(stalledScheduler).subscribe(stalled);
+        for (int i = 0; i < 10; i++) {
+            writer.publish(i);
+        }
+        // Claims the slot the writer reclaimed from the stalled reader
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mReader.asObservable(computation())
+               .first()
+               .subscribe(ts);
+
+        stalledScheduler.triggerActions();
+        writer.publish(42);
+
+        stalled.assertError(IllegalStateException.class);
+        ts.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        ts.assertNoErrors();
+        ts.assertValue(42);
+    }
+
+    @Test(timeout = 20000)
+    public void publish_ReachesReaderInOtherProcess_AndContinuesAfterItIsKilled()
+            throws IOException, InterruptedException {
+        RxSharedMemoryProxy<Integer> writer = RxSharedMemoryProxy.createWriter(
+                mFile, 4, 4, new IntegerCodec(), 200, TimeUnit.MILLISECONDS);
+        Process process = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                SharedMemoryReaderProcess.class.getName(),
+                mFile.getPath()).start();
+        try {
+            BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+            assertThat(output.readLine()).isEqualTo(SharedMemoryReaderProcess.READY);
+
+            for (int i = 0; i < 3; i++) {
+                writer.publish(i);
+                assertThat(output.readLine()).isEqualTo(String.valueOf(i));
+            }
+        } finally {
+            // The reader dies without unsubscribing
+            process.destroy();
+            process.waitFor();
+        }
+
+        // Blocks only until the reader of the killed process is reclaimed
+        for (int i = 0; i < 10; i++) {
+            writer.publish(i);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void publish_IsNotSupportedByReader() {
+        mReader.publish(1);
+    }
+
+    @Test(expected = IOException.class)
+    public void openReader_ThrowsWhenFileWasNotCreatedByWriter() throws IOException {
+        RxSharedMemoryProxy.openReader(mFolder.newFile(), new IntegerCodec());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWriter_ThrowsWhenCapacityIsNotPowerOfTwo() throws IOException {
+        RxSharedMemoryProxy.createWriter(mFile, 3, 4, new IntegerCodec());
+    }
+
+    static final class IntegerCodec implements ProxyCodec<Integer> {
+
+        @Override
+        public void encode(final Integer value, final ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer decode(final ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    }
+
+}
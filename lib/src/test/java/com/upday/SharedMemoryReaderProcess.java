@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday;
+
+import java.io.File;
+import java.io.IOException;
+
+import rx.functions.Action1;
+
+import static rx.schedulers.Schedulers.computation;
+
+/**
+ * Reader of a shared memory proxy running in its own process, started by
+ * {@link RxSharedMemoryProxyTest}. Prints a line once subscribed and then every
+ * received value, until the process is killed.
+ */
+public final class SharedMemoryReaderProcess {
+
+    static final String READY = "ready";
+
+    private SharedMemoryReaderProcess() {
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        RxSharedMemoryProxy.openReader(new File(args[0]), new RxSharedMemoryProxyTest.IntegerCodec())
+                           .asObservable(computation())
+                           .subscribe(new Action1<Integer>() {
+                               @Override
+                               public void call(final Integer value) {
+                                   System.out.println(value);
+                               }
+                           });
+        System.out.println(READY);
+
+        Thread.sleep(Long.MAX_VALUE);
+    }
+
+}
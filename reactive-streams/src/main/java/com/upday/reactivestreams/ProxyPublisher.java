@@ -0,0 +1,230 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday.reactivestreams;
+
+import com.upday.ProxyBuffer;
+import com.upday.RxPublishProxy;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reactive Streams {@link Publisher} of the values of a proxy.
+ *
+ * Published values are added straight to the {@link ProxyBuffer} of each
+ * subscription and emitted from it on the {@link Executor}, without going
+ * through an {@link rx.Observable}. On Java 9 and newer the publisher can be
+ * exposed as {@code java.util.concurrent.Flow.Publisher} by
+ * {@code org.reactivestreams.FlowAdapters.toFlowPublisher}, which delegates
+ * the calls and adds no buffer.
+ *
+ * A subscription whose drain is rejected by the executor is cancelled and its
+ * subscriber receives the {@link RejectedExecutionException}, while the proxy
+ * keeps notifying its other subscribers.
+ */
+public final class ProxyPublisher<T> implements Publisher<T> {
+
+    private final RxPublishProxy<T> mProxy;
+
+    private final Executor mExecutor;
+
+    /**
+     * Returns a publisher of the values of the proxy.
+     *
+     * @param proxy    the proxy to publish the values of
+     * @param executor the executor the values are emitted on
+     * @return a non null publisher
+     */
+    public static <T> ProxyPublisher<T> asPublisher(final RxPublishProxy<T> proxy,
+                                                    final Executor executor) {
+        checkNotNull(proxy, "Proxy cannot be null.");
+        checkNotNull(executor, "Executor cannot be null.");
+
+        return new ProxyPublisher<T>(proxy, executor);
+    }
+
+    private ProxyPublisher(final RxPublishProxy<T> proxy, final Executor executor) {
+        mProxy = proxy;
+        mExecutor = executor;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super T> subscriber) {
+        checkNotNull(subscriber, "Subscriber cannot be null.");
+
+        final ProxySubscription subscription = new ProxySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    private static <T> T checkNotNull(final T reference, final String message) {
+        if (reference == null) {
+            throw new NullPointerException(message);
+        }
+        return reference;
+    }
+
+    /**
+     * Buffer of a subscriber, drained on the executor as far as the subscriber requested.
+     */
+    final class ProxySubscription implements Subscription, Runnable {
+
+        private final Subscriber<? super T> mSubscriber;
+
+        private final AtomicLong mRequested = new AtomicLong();
+
+        /**
+         * Starts at one, so nothing is emitted before {@code onSubscribe} returns.
+         */
+        private final AtomicInteger mWip = new AtomicInteger(1);
+
+        private final ProxyBuffer<T> mBuffer;
+
+        private volatile boolean mCancelled;
+
+        private volatile Throwable mError;
+
+        ProxySubscription(final Subscriber<? super T> subscriber) {
+            mSubscriber = subscriber;
+            mBuffer = mProxy.subscribeBuffer(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled) {
+                        schedule();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                mError = new IllegalArgumentException("Requested amount has to be positive, was " + n + ".");
+            } else {
+                addRequested(n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            if (!mCancelled) {
+                mCancelled = true;
+                mBuffer.cancel();
+                schedule();
+            }
+        }
+
+        void start() {
+            if (mWip.decrementAndGet() != 0) {
+                execute();
+            }
+        }
+
+        private void schedule() {
+            if (mWip.getAndIncrement() == 0) {
+                execute();
+            }
+        }
+
+        /**
+         * Hands the drain over to the executor. Called only by the owner of the drain,
+         * which therefore can signal the subscriber when the executor rejects it.
+         * The drain is never released afterwards, so nothing is emitted any more.
+         */
+        private void execute() {
+            try {
+                mExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                if (!mCancelled) {
+                    cancel();
+                    mSubscriber.onError(e);
+                }
+            }
+        }
+
+        /**
+         * Adds to the requested amount, capped at {@link Long#MAX_VALUE} which means unbounded.
+         */
+        private void addRequested(final long n) {
+            long requested;
+            long next;
+            do {
+                requested = mRequested.get();
+                if (requested == Long.MAX_VALUE) {
+                    return;
+                }
+                next = requested + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!mRequested.compareAndSet(requested, next));
+        }
+
+        /**
+         * Drains and emits values from the buffer in a thread-safe non-blocking way.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (mError != null && !mCancelled) {
+                    cancel();
+                    mSubscriber.onError(mError);
+                }
+                if (mCancelled) {
+                    while (mBuffer.poll() != null) {
+                        // Releases the buffered values
+                    }
+                } else {
+                    emit();
+                }
+                missed = mWip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            final long requested = mRequested.get();
+            long emitted = 0;
+            T value;
+
+            while (emitted != requested && !mCancelled && (value = mBuffer.poll()) != null) {
+                mSubscriber.onNext(value);
+                ++emitted;
+            }
+            if (emitted != 0 && requested != Long.MAX_VALUE) {
+                mRequested.addAndGet(-emitted);
+            }
+        }
+    }
+
+}
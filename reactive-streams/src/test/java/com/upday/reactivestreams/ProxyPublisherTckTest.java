@@ -0,0 +1,163 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday.reactivestreams;
+
+import com.upday.RxPublishProxy;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.reactivestreams.tck.PublisherVerification;
+import org.reactivestreams.tck.TestEnvironment;
+import org.testng.annotations.AfterClass;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the Reactive Streams TCK against {@link ProxyPublisher} on an asynchronous executor.
+ *
+ * A proxy never completes, so every publisher of the TCK subscribes to a new
+ * proxy, publishes the requested number of elements and completes the
+ * subscriber after it received them.
+ */
+public class ProxyPublisherTckTest extends PublisherVerification<Integer> {
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(2);
+
+    public ProxyPublisherTckTest() {
+        super(new TestEnvironment(500));
+    }
+
+    @AfterClass
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Override
+    public Publisher<Integer> createPublisher(final long elements) {
+        return new Publisher<Integer>() {
+            @Override
+            public void subscribe(final Subscriber<? super Integer> subscriber) {
+                final RxPublishProxy<Integer> proxy = RxPublishProxy.create();
+                ProxyPublisher.asPublisher(proxy, mExecutor)
+                              .subscribe(subscriber == null ? null : new TakeSubscriber(subscriber, elements));
+                for (int i = 0; i < elements; i++) {
+                    proxy.publish(i);
+                }
+            }
+        };
+    }
+
+    /**
+     * A proxy cannot fail.
+     */
+    @Override
+    public Publisher<Integer> createFailedPublisher() {
+        return null;
+    }
+
+    /**
+     * All elements are published right after subscribing, so their number is limited.
+     */
+    @Override
+    public long maxElementsFromPublisher() {
+        return 1024;
+    }
+
+    /**
+     * Completes the subscriber after the given number of values and cancels the proxy subscription.
+     */
+    private static final class TakeSubscriber implements Subscriber<Integer>, Subscription {
+
+        private final Subscriber<? super Integer> mSubscriber;
+
+        private final long mLimit;
+
+        private Subscription mSubscription;
+
+        private long mCount;
+
+        private boolean mDone;
+
+        TakeSubscriber(final Subscriber<? super Integer> subscriber, final long limit) {
+            mSubscriber = subscriber;
+            mLimit = limit;
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            mSubscription = subscription;
+            mSubscriber.onSubscribe(this);
+            if (mLimit == 0 && !mDone) {
+                complete();
+            }
+        }
+
+        @Override
+        public void onNext(final Integer value) {
+            if (!mDone) {
+                mSubscriber.onNext(value);
+                if (++mCount == mLimit) {
+                    complete();
+                }
+            }
+        }
+
+        @Override
+        public void onError(final Throwable error) {
+            if (!mDone) {
+                mDone = true;
+                mSubscriber.onError(error);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!mDone) {
+                mDone = true;
+                mSubscriber.onComplete();
+            }
+        }
+
+        @Override
+        public void request(final long n) {
+            mSubscription.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            mSubscription.cancel();
+        }
+
+        private void complete() {
+            mDone = true;
+            mSubscription.cancel();
+            mSubscriber.onComplete();
+        }
+    }
+
+}
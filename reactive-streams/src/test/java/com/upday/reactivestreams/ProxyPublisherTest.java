@@ -0,0 +1,235 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 upday GmbH & Co. KG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.upday.reactivestreams;
+
+import com.upday.RxCacheProxy;
+import com.upday.RxPublishProxy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.observers.TestSubscriber;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static rx.schedulers.Schedulers.immediate;
+
+public class ProxyPublisherTest {
+
+    /**
+     * Runs the drain on the calling thread, so the assertions need no waiting.
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private RxPublishProxy<Integer> mProxy;
+
+    private RecordingSubscriber mSubscriber;
+
+    @Before
+    public void setUp() {
+        mProxy = RxPublishProxy.create();
+        mSubscriber = new RecordingSubscriber();
+    }
+
+    @Test
+    public void publish_NotifiesRequestedValues() {
+        ProxyPublisher.asPublisher(mProxy, DIRECT).subscribe(mSubscriber);
+        mSubscriber.mSubscription.request(2);
+
+        mProxy.publish(1);
+        mProxy.publish(2);
+
+        assertThat(mSubscriber.mValues).containsExactly(1, 2);
+    }
+
+    @Test
+    public void publishRespectsBackPressure_AndEmitsJustOneRequestedItem() {
+        ProxyPublisher.asPublisher(mProxy, DIRECT).subscribe(mSubscriber);
+        mSubscriber.mSubscription.request(1);
+
+        mProxy.publish(1);
+        mProxy.publish(2);
+
+        assertThat(mSubscriber.mValues).containsExactly(1);
+    }
+
+    @Test
+    public void request_EmitsBufferedValues() {
+        ProxyPublisher.asPublisher(mProxy, DIRECT).subscribe(mSubscriber);
+        mProxy.publish(1);
+        mProxy.publish(2);
+
+        mSubscriber.mSubscription.request(2);
+
+        assertThat(mSubscriber.mValues).containsExactly(1, 2);
+    }
+
+    @Test
+    public void cancel_StopsNotifications() {
+        ProxyPublisher.asPublisher(mProxy, DIRECT).subscribe(mSubscriber);
+        mSubscriber.mSubscription.request(2);
+
+        mSubscriber.mSubscription.cancel();
+        mProxy.publish(1);
+
+        assertThat(mSubscriber.mValues).isEmpty();
+    }
+
+    @Test
+    public void request_ReportsError_WhenAmountIsNotPositive() {
+        ProxyPublisher.asPublisher(mProxy, DIRECT).subscribe(mSubscriber);
+
+        mSubscriber.mSubscription.request(0);
+
+        assertThat(mSubscriber.mError).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void subscriber_ReceivesCachedValue() {
+        RxCacheProxy<Integer> proxy = RxCacheProxy.create(1);
+        ProxyPublisher.asPublisher(proxy, DIRECT).subscribe(mSubscriber);
+
+        mSubscriber.mSubscription.request(1);
+
+        assertThat(mSubscriber.mValues).containsExactly(1);
+    }
+
+    @Test
+    public void publish_NotifiesAllValuesInOrder_OnAsynchronousExecutor() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final List<Integer> values = new CopyOnWriteArrayList<Integer>();
+        final CountDownLatch latch = new CountDownLatch(100);
+        Integer[] expected = new Integer[100];
+
+        try {
+            ProxyPublisher.asPublisher(mProxy, executor).subscribe(new Subscriber<Integer>() {
+                @Override
+                public void onSubscribe(final Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(final Integer value) {
+                    values.add(value);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(final Throwable error) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            for (int i = 0; i < 100; i++) {
+                mProxy.publish(i);
+                expected[i] = i;
+            }
+
+            assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+            assertThat(values).containsExactly(expected);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void publish_NotifiesOtherSubscribers_WhenExecutorRejectsDrain() {
+        final AtomicBoolean rejecting = new AtomicBoolean();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                if (rejecting.get()) {
+                    throw new RejectedExecutionException();
+                }
+                command.run();
+            }
+        };
+        ProxyPublisher.asPublisher(mProxy, executor).subscribe(mSubscriber);
+        mSubscriber.mSubscription.request(1);
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        mProxy.asObservable(immediate()).subscribe(ts);
+        rejecting.set(true);
+
+        mProxy.publish(1);
+
+        ts.assertValue(1);
+        assertThat(mSubscriber.mValues).isEmpty();
+        assertThat(mSubscriber.mError).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void subscribe_DoesNotAcceptNullSubscriber() {
+        ProxyPublisher.asPublisher(mProxy, DIRECT).subscribe(null);
+    }
+
+    private static final class RecordingSubscriber implements Subscriber<Integer> {
+
+        private final List<Integer> mValues = new ArrayList<Integer>();
+
+        private Subscription mSubscription;
+
+        private Throwable mError;
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            mSubscription = subscription;
+        }
+
+        @Override
+        public void onNext(final Integer value) {
+            mValues.add(value);
+        }
+
+        @Override
+        public void onError(final Throwable error) {
+            mError = error;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+}